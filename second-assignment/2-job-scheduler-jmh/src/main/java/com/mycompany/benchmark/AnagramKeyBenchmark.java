@@ -0,0 +1,93 @@
+/*
+* AnagramKeyBenchmark
+*
+* @description: Cost of computing the anagram key of a word: the original
+*               sorted String (AnagramJob.ciao) against AnagramKey.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.benchmark;
+
+import com.mycompany.anagram.AnagramKey;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnagramKeyBenchmark {
+
+    /* The words of the corpus */
+    private String[] words;
+
+    private final char[] buffer = new char[256];
+
+    @Setup
+    public void setup() throws IOException {
+        words = Corpus.words();
+    }
+
+    /**
+     * The 'characters in alphabetical order' transformation of the
+     * original AnagramJob.
+     */
+    private static String ciao(String s) {
+        char charArray[] = s.toLowerCase().toCharArray();
+        Arrays.sort(charArray);
+        return new String(charArray);
+    }
+
+    @Benchmark
+    public void ciaoString(Blackhole bh) {
+        for (String w : words) {
+            bh.consume(ciao(w));
+        }
+    }
+
+    @Benchmark
+    public void anagramKey(Blackhole bh) {
+        for (String w : words) {
+            int len = w.length();
+            w.getChars(0, len, buffer, 0);
+            bh.consume(AnagramKey.of(buffer, len));
+        }
+    }
+
+    /* Hashing is where the packed signature pays off */
+    @Benchmark
+    public int ciaoStringHash() {
+        int h = 0;
+        for (String w : words) {
+            h += ciao(w).hashCode();
+        }
+        return h;
+    }
+
+    @Benchmark
+    public int anagramKeyHash() {
+        int h = 0;
+        for (String w : words) {
+            int len = w.length();
+            w.getChars(0, len, buffer, 0);
+            h += AnagramKey.of(buffer, len).hashCode();
+        }
+        return h;
+    }
+}
@@ -0,0 +1,40 @@
+/*
+* BenchmarkMain
+*
+* @description: Entry point of the benchmarks, writing the results as JSON
+*               unless another result format is requested.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.benchmark;
+
+import java.util.Arrays;
+import java.util.List;
+import org.openjdk.jmh.Main;
+
+
+public class BenchmarkMain {
+
+    private static final String RESULT_FILE = "target/jmh-result.json";
+
+    /**
+     * Runs JMH with the given command line.
+     * 
+     * @param args The JMH options, see '-h'
+     */
+    public static void main(String[] args) throws Exception {
+        List<String> options = Arrays.asList(args);
+        if (options.contains("-rf") || options.contains("-rff")) {
+            Main.main(args);
+            return;
+        }
+        String[] json = new String[args.length + 4];
+        json[0] = "-rf";
+        json[1] = "json";
+        json[2] = "-rff";
+        json[3] = RESULT_FILE;
+        System.arraycopy(args, 0, json, 4, args.length);
+        Main.main(json);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+* CollectBenchmark
+*
+* @description: Cost of JobSchedulerContext.collect for several input sizes
+*               and key cardinalities, with and without a reducer.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.benchmark;
+
+import com.mycompany.framework.AJob;
+import com.mycompany.framework.JobSchedulerContext;
+import com.mycompany.framework.JobSchedulerStrategy;
+import com.mycompany.framework.Pair;
+import com.mycompany.framework.Reducer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class CollectBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int records;
+
+    @Param({"100", "10000", "1000000"})
+    public int keys;
+
+    @Param({"false", "true"})
+    public boolean reduce;
+
+    private List<Pair<Integer, Integer>> pairs;
+    private JobSchedulerContext<Integer, Integer> context;
+
+    /**
+     * Strategy doing nothing but declaring (or not) a summing reducer.
+     */
+    private static class CountStrategy
+            extends JobSchedulerStrategy<Integer, Integer> {
+        private final boolean reduce;
+
+        CountStrategy(boolean reduce) {
+            this.reduce = reduce;
+        }
+
+        @Override
+        protected Stream<AJob<Integer, Integer>> emit() {
+            return Stream.empty();
+        }
+
+        @Override
+        protected Reducer<Integer> reducer() {
+            return reduce ? new Reducer<>(0, Integer::sum) : null;
+        }
+
+        @Override
+        protected void output(Stream<Pair<Integer, List<Integer>>> groups) {
+        }
+    }
+
+    @Setup
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(42);
+        pairs = new ArrayList<>(records);
+        for (int i = 0; i < records; i++) {
+            pairs.add(new Pair<>(random.nextInt(keys), 1));
+        }
+        context = new JobSchedulerContext<>(new CountStrategy(reduce));
+    }
+
+    @Benchmark
+    public long collect() {
+        return context.collect(pairs.stream()).count();
+    }
+}
@@ -0,0 +1,101 @@
+/*
+* Corpus
+*
+* @description: Access to the Books corpus bundled with 2-job-scheduler.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+final class Corpus {
+
+    /* Overridable with -jvmArgsAppend -Dbooks.dir=... */
+    private static final String BOOKS_DIR = System.getProperty(
+        "books.dir", "../2-job-scheduler/src/main/java/Books");
+
+    private Corpus() {
+    }
+
+    /**
+     * Gets the directory of the corpus.
+     * 
+     * @return The absolute path of the Books directory
+     */
+    static Path directory() {
+        Path dir = Path.of(BOOKS_DIR).toAbsolutePath();
+        if (!Files.isDirectory(dir)) {
+            throw new RuntimeException("Books not found, set -Dbooks.dir!");
+        }
+        return dir;
+    }
+
+    /**
+     * Concatenates the books into a temporary file.
+     * 
+     * @param copies How many times the corpus is repeated
+     * @return The file, deleted on exit
+     */
+    static Path concatenated(int copies) throws IOException {
+        Path file = Files.createTempFile("corpus-", ".txt");
+        file.toFile().deleteOnExit();
+        List<Path> books = books();
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (int i = 0; i < copies; i++) {
+                for (Path book : books) {
+                    Files.copy(book, out);
+                }
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Tokenizes the corpus as the original AnagramJob did.
+     * 
+     * @return The lowercase words of the corpus, repetitions included
+     */
+    static String[] words() throws IOException {
+        List<String> words = new ArrayList<>();
+        for (Path book : books()) {
+            try (Stream<String> lines = Files.lines(book)) {
+                words.addAll(regexWords(lines).collect(Collectors.toList()));
+            }
+        }
+        return words.toArray(new String[0]);
+    }
+
+    /**
+     * The tokenization of the original AnagramJob.execute.
+     * 
+     * @param lines The lines to tokenize
+     * @return The lowercase words with more than 4 ASCII letters
+     */
+    static Stream<String> regexWords(Stream<String> lines) {
+        return lines
+            .flatMap(x -> Arrays.stream(x.split("\\s").clone()))
+            .filter(word -> word.length() > 4
+                    && word.matches("^[a-zA-Z]+$"))
+            .map(String::toLowerCase);
+    }
+
+    private static List<Path> books() throws IOException {
+        try (Stream<Path> paths = Files.list(directory())) {
+            return paths
+                .filter(x -> x.toString().endsWith(".txt"))
+                .sorted()
+                .collect(Collectors.toList());
+        }
+    }
+}
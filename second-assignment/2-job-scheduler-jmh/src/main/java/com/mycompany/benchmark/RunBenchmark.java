@@ -0,0 +1,85 @@
+/*
+* RunBenchmark
+*
+* @description: End-to-end JobSchedulerContext.run of the anagram pipeline
+*               on the Books corpus.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.benchmark;
+
+import com.mycompany.anagram.AnagramKey;
+import com.mycompany.anagram.AnagramStrategy;
+import com.mycompany.framework.JobSchedulerContext;
+import com.mycompany.framework.Pair;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RunBenchmark {
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    @Param({"false", "true"})
+    public boolean mapped;
+
+    private CountingStrategy strat;
+    private JobSchedulerContext<AnagramKey, Integer> context;
+
+    /**
+     * AnagramStrategy counting the groups instead of writing them, so that
+     * the benchmark does not measure the file system.
+     */
+    private static class CountingStrategy extends AnagramStrategy {
+        long groups;
+
+        CountingStrategy(String dir_path) {
+            super(dir_path);
+        }
+
+        @Override
+        protected void output(Stream<Pair<AnagramKey, List<Integer>>> groups) {
+            this.groups = groups.count();
+        }
+    }
+
+    @Setup
+    public void setup() {
+        strat = new CountingStrategy(Corpus.directory().toString());
+        strat.setMemoryMapped(mapped);
+        context = new JobSchedulerContext<>(strat);
+        context.setParallelism(parallelism);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public long run() {
+        context.run();
+        return strat.groups;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+* TokenizeBenchmark
+*
+* @description: Cost of AnagramJob.execute on the corpus: the original regex
+*               tokenization against the current line and mapped modes.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.benchmark;
+
+import com.mycompany.anagram.AnagramJob;
+import com.mycompany.anagram.AnagramKey;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenizeBenchmark {
+
+    /* How many times the corpus is repeated in the input file */
+    @Param({"1", "20"})
+    public int copies;
+
+    private Path file;
+    private long size;
+
+    @Setup
+    public void setup() throws IOException {
+        file = Corpus.concatenated(copies);
+        size = Files.size(file);
+    }
+
+    @Benchmark
+    public long regex() throws IOException {
+        try (Stream<String> lines = Files.lines(file)) {
+            return Corpus.regexWords(lines).map(AnagramKey::of).count();
+        }
+    }
+
+    @Benchmark
+    public long lines() {
+        try (Stream<?> pairs = new AnagramJob(file, 0, size, false).execute()) {
+            return pairs.count();
+        }
+    }
+
+    @Benchmark
+    public long mapped() {
+        try (Stream<?> pairs = new AnagramJob(file, 0, size, true).execute()) {
+            return pairs.count();
+        }
+    }
+}
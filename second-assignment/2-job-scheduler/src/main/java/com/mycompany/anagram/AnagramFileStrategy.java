@@ -0,0 +1,131 @@
+/*
+* AnagramFileStrategy
+*
+* @description: Subclass of JobSchedulerStrategy for the strategies reading
+*               the documents of a directory, one job per split of each
+*               document.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.anagram;
+
+import com.mycompany.framework.AJob;
+import com.mycompany.framework.JobSchedulerStrategy;
+import com.mycompany.framework.SplittableFileJob;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+
+public abstract class AnagramFileStrategy<V>
+        extends JobSchedulerStrategy<AnagramKey, V> {
+
+    private static final String FILE_EXTENSION = ".txt";
+    private static final long SPLIT_SIZE = 64L << 20; /* 64 MiB */
+    private final String dir_path;
+    private long split_size = SPLIT_SIZE;
+    private boolean mapped = false;
+
+    /**
+     * Constructor.
+     *
+     * @param dir_path The absolute path of a directory where documents are
+     *                 stored
+     */
+    protected AnagramFileStrategy(String dir_path) {
+        checkDirectory(dir_path);
+        this.dir_path = dir_path;
+    }
+
+    /**
+     * Setter method for the size of the splits of a file.
+     *
+     * @param split_size The maximum number of bytes read by a job
+     */
+    public void setSplitSize(long split_size) {
+        if (split_size < 1) {
+            throw new RuntimeException("Split size must be positive!");
+        }
+        this.split_size = split_size;
+    }
+
+    /**
+     * Setter method for the input mode of the jobs.
+     *
+     * @param mapped True to tokenize memory-mapped files without decoding
+     *               them, false to read them line by line
+     */
+    public void setMemoryMapped(boolean mapped) {
+        this.mapped = mapped;
+    }
+
+    /**
+     * Getter method for the input mode of the jobs.
+     *
+     * @return True if the files are memory-mapped
+     */
+    protected boolean isMemoryMapped() {
+        return mapped;
+    }
+
+    /**
+     * Visits a directory and creates a new job for each split of each file
+     * ending with 'FILE_EXTENSION' in that directory.
+     *
+     * @return A stream of jobs
+     */
+    @Override
+    protected Stream<AJob<AnagramKey, V>> emit() {
+        try {
+            var paths = Files.walk(Path.of(dir_path));
+            return paths
+                .filter(Files::isRegularFile)
+                .flatMap(this::jobs);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return Stream.empty();
+    }
+
+    /**
+     * Creates a new job for each split of a file, if it ends with
+     * 'FILE_EXTENSION'.
+     *
+     * @param path The file
+     * @return A stream of jobs, empty if the file is not a document
+     */
+    public Stream<AJob<AnagramKey, V>> jobs(Path path) {
+        if (!path.toString().endsWith(FILE_EXTENSION)) {
+            return Stream.empty();
+        }
+        return SplittableFileJob.splits(path, split_size)
+            .stream()
+            .map(r -> job(path, r.getKey(), r.getValue()));
+    }
+
+    /**
+     * Creates the job of a split.
+     *
+     * @param path The file
+     * @param start The first byte of the split
+     * @param end The byte after the last one of the split
+     * @return The job
+     */
+    protected abstract AJob<AnagramKey, V> job(Path path, long start,
+            long end);
+
+    /**
+     * Utility function for checking if a given path is a directory.
+     *
+     * @param dir_path The path to check if it is a directory.
+     */
+    private void checkDirectory(String dir_path) {
+        File f = new File(dir_path);
+        if(!f.isDirectory()) {
+            throw new RuntimeException("Given path is not a directory!");
+        }
+    }
+}
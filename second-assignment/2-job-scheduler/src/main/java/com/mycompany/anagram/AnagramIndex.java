@@ -0,0 +1,278 @@
+/*
+* AnagramIndex
+*
+* @description: Persistent, memory-mapped index from the anagram key of a
+*               word to all the words with that key.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.anagram;
+
+import com.mycompany.framework.Pair;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+
+public final class AnagramIndex {
+
+    /* File layout, big-endian:
+     *   header: MAGIC, VERSION, key count, slot count, word count (ints)
+     *   keys:   per key, sorted: key offset, key length, first word, words
+     *   slots:  open-addressing table of key index + 1, 0 if free
+     *   words:  per word, sorted within a key: word offset, word length
+     *   pool:   the bytes of the keys and of the words
+     */
+    private static final int MAGIC = 0x414e4958; /* "ANIX" */
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 5 * Integer.BYTES;
+    private static final int KEY_BYTES = 4 * Integer.BYTES;
+    private static final int SLOT_BYTES = Integer.BYTES;
+    private static final int WORD_BYTES = 2 * Integer.BYTES;
+
+    /* The mapped file and the offsets of its sections */
+    private final ByteBuffer map;
+    private final int key_count;
+    private final int slot_count;
+    private final int keys_offset;
+    private final int slots_offset;
+    private final int words_offset;
+    private final int pool_offset;
+
+    private AnagramIndex(ByteBuffer map) {
+        if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION) {
+            throw new RuntimeException("Not an anagram index!");
+        }
+        this.map = map;
+        this.key_count = map.getInt(8);
+        this.slot_count = map.getInt(12);
+        int word_count = map.getInt(16);
+        this.keys_offset = HEADER_BYTES;
+        this.slots_offset = keys_offset + key_count * KEY_BYTES;
+        this.words_offset = slots_offset + slot_count * SLOT_BYTES;
+        this.pool_offset = words_offset + word_count * WORD_BYTES;
+    }
+
+    /**
+     * Opens an index by mapping it in memory; only the header is read, the
+     * rest is paged in by the lookups. The mapping is released by the
+     * garbage collector. The index must not exceed 2 GiB.
+     *
+     * @param path The file of the index
+     * @return The index
+     */
+    public static AnagramIndex open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(
+                path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new RuntimeException("Index larger than 2 GiB!");
+            }
+            return new AnagramIndex(channel.map(
+                FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Gets the number of keys of the index.
+     *
+     * @return The number of anagram classes
+     */
+    public int size() {
+        return key_count;
+    }
+
+    /**
+     * Finds the anagrams of a word, i.e. the indexed words with the same
+     * letters, in constant time: the key of the word is hashed into the
+     * slot table, and its postings are read from the mapped file. Safe for
+     * concurrent use.
+     *
+     * @param word A word
+     * @return The indexed words with the same key, sorted, possibly
+     *         including the word itself; empty if there is none or if the
+     *         word is not made of ASCII letters
+     */
+    public List<String> lookup(String word) {
+        if (word.isEmpty() || !word.chars().allMatch(AnagramIndex::isLetter)) {
+            return List.of();
+        }
+        byte[] key = AnagramKey.of(word).toString()
+            .getBytes(StandardCharsets.US_ASCII);
+        int mask = slot_count - 1;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            int k = map.getInt(slots_offset + i * SLOT_BYTES) - 1;
+            if (k < 0) {
+                return List.of();
+            }
+            int entry = keys_offset + k * KEY_BYTES;
+            if (equals(map.getInt(entry), map.getInt(entry + 4), key)) {
+                return words(map.getInt(entry + 8), map.getInt(entry + 12));
+            }
+        }
+    }
+
+    /**
+     * Reads all the classes of the index, in the alphabetical order of
+     * their keys.
+     *
+     * @return The key of each class with its sorted words
+     */
+    public Stream<Pair<AnagramKey, List<String>>> groups() {
+        return IntStream.range(0, key_count)
+            .mapToObj(k -> {
+                int entry = keys_offset + k * KEY_BYTES;
+                return new Pair<>(
+                    AnagramKey.of(string(map.getInt(entry),
+                        map.getInt(entry + 4))),
+                    words(map.getInt(entry + 8), map.getInt(entry + 12)));
+            });
+    }
+
+    private List<String> words(int first, int count) {
+        List<String> words = new ArrayList<>(count);
+        for (int i = first; i < first + count; i++) {
+            int entry = words_offset + i * WORD_BYTES;
+            words.add(string(map.getInt(entry), map.getInt(entry + 4)));
+        }
+        return words;
+    }
+
+    private String string(int offset, int length) {
+        byte[] bytes = new byte[length];
+        map.duplicate().position(pool_offset + offset).get(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    private boolean equals(int offset, int length, byte[] key) {
+        if (length != key.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (map.get(pool_offset + offset + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes an index, atomically replacing the previous one.
+     *
+     * @param path The file of the index
+     * @param groups The words of each key, possibly repeated
+     */
+    public static void write(Path path,
+            Stream<Pair<AnagramKey, List<String>>> groups) throws IOException {
+        /* Keys sorted by their letters, words sorted and distinct */
+        List<Map.Entry<String, TreeSet<String>>> entries = groups
+            .map(x -> Map.entry(x.getKey().toString(),
+                new TreeSet<>(x.getValue())))
+            .sorted(Map.Entry.comparingByKey())
+            .collect(Collectors.toList());
+
+        int key_count = entries.size();
+        int slot_count = Integer.highestOneBit(Math.max(1, key_count)) * 4;
+        int[] slots = new int[slot_count];
+        int word_count = 0;
+        for (int k = 0; k < key_count; k++) {
+            byte[] key = ascii(entries.get(k).getKey());
+            int i = hash(key) & (slot_count - 1);
+            while (slots[i] != 0) {
+                i = (i + 1) & (slot_count - 1);
+            }
+            slots[i] = k + 1;
+            word_count += entries.get(k).getValue().size();
+        }
+
+        /* Not a createTempFile, readable by the owner only: the index gets
+           the default permissions, as any other output file */
+        Path tmp = path.resolveSibling(path.getFileName() + "."
+            + ProcessHandle.current().pid() + ".tmp");
+        /* Left by a killed process with the same pid */
+        Files.deleteIfExists(tmp);
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tmp,
+                    StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(key_count);
+            out.writeInt(slot_count);
+            out.writeInt(word_count);
+
+            /* Keys, then words, with their offsets in the pool */
+            int pool = 0;
+            int first = 0;
+            for (Map.Entry<String, TreeSet<String>> e : entries) {
+                out.writeInt(pool);
+                out.writeInt(e.getKey().length());
+                out.writeInt(first);
+                out.writeInt(e.getValue().size());
+                pool += e.getKey().length();
+                first += e.getValue().size();
+            }
+            for (int slot : slots) {
+                out.writeInt(slot);
+            }
+            for (Map.Entry<String, TreeSet<String>> e : entries) {
+                for (String w : e.getValue()) {
+                    out.writeInt(pool);
+                    out.writeInt(w.length());
+                    pool += w.length();
+                }
+            }
+
+            for (Map.Entry<String, TreeSet<String>> e : entries) {
+                out.write(ascii(e.getKey()));
+            }
+            for (Map.Entry<String, TreeSet<String>> e : entries) {
+                for (String w : e.getValue()) {
+                    out.write(ascii(w));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static boolean isLetter(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Hashes the letters of a key, spreading the bits for linear probing.
+     *
+     * @param key The letters of the key
+     * @return The hash
+     */
+    private static int hash(byte[] key) {
+        int h = 1;
+        for (byte b : key) {
+            h = 31 * h + b;
+        }
+        return (int) ((h * 0x9E3779B97F4A7C15L) >>> 32);
+    }
+}
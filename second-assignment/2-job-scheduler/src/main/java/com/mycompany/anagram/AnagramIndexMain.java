@@ -0,0 +1,58 @@
+/*
+* AnagramIndexMain
+*
+* @description: Main class building and querying the anagram index.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.anagram;
+
+import com.mycompany.framework.JobSchedulerContext;
+import java.io.IOException;
+import java.nio.file.Path;
+
+
+public class AnagramIndexMain {
+
+    /**
+     * 
+     * @param args Either 'build', the absolute path of a directory, the
+     *             file of the index and, optionally, the number of jobs to
+     *             execute in parallel; 'lookup', the file of the index
+     *             and the words to look up; or 'sub', the file of the
+     *             index, the minimum length of the sub-anagrams and the
+     *             words whose sub-anagrams to find
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 3 && args.length <= 4 && args[0].equals("build")) {
+            AnagramIndexStrategy strat =
+                new AnagramIndexStrategy(args[1], Path.of(args[2]));
+            try (JobSchedulerContext<AnagramKey, String> context =
+                    new JobSchedulerContext<>(strat)) {
+                if (args.length == 4) {
+                    context.setParallelism(Integer.parseInt(args[3]));
+                }
+                context.run();
+            }
+        } else if (args.length >= 3 && args[0].equals("lookup")) {
+            AnagramIndex index = AnagramIndex.open(Path.of(args[1]));
+            for (int i = 2; i < args.length; i++) {
+                System.out.println(args[i] + ": "
+                    + String.join(" ", index.lookup(args[i])));
+            }
+        } else if (args.length >= 4 && args[0].equals("sub")) {
+            SubAnagramIndex index = SubAnagramIndex.of(
+                AnagramIndex.open(Path.of(args[1])).groups());
+            int min_len = Integer.parseInt(args[2]);
+            for (int i = 3; i < args.length; i++) {
+                System.out.println(args[i] + ": "
+                    + String.join(" ", index.find(args[i], min_len)));
+            }
+        } else {
+            System.out.println("Usage: build <dir> <index> [parallelism]"
+                + " | lookup <index> <word>..."
+                + " | sub <index> <min length> <word>...");
+        }
+    }
+}
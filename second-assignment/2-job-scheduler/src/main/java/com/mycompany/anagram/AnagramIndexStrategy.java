@@ -0,0 +1,66 @@
+/*
+* AnagramIndexStrategy
+*
+* @description: Strategy building the anagram index of the documents of a
+*               directory.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.anagram;
+
+import com.mycompany.framework.AJob;
+import com.mycompany.framework.Pair;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+
+public class AnagramIndexStrategy extends AnagramFileStrategy<String> {
+
+    private final Path index_path;
+    
+    /**
+     * Constructor.
+     * 
+     * @param dir_path The absolute path of a directory where documents are
+     *                 stored
+     * @param index_path The file of the index
+     */
+    public AnagramIndexStrategy(String dir_path, Path index_path) {
+        super(dir_path);
+        this.index_path = index_path;
+    }
+    
+    /**
+     * Creates the job of a split, emitting the distinct words of each key.
+     * 
+     * @param path The file
+     * @param start The first byte of the split
+     * @param end The byte after the last one of the split
+     * @return The job
+     */
+    @Override
+    protected AJob<AnagramKey, String> job(Path path, long start,
+            long end) {
+        return new AnagramWordJob(path, start, end, isMemoryMapped());
+    }
+    
+    /**
+     * Writes the index, where each key maps to its distinct words.
+     * 
+     * @param groups The groups of pairs generated by 'collect' phase.
+     */
+    @Override
+    protected void output(Stream<Pair<AnagramKey, List<String>>> groups) {
+        try {
+            AnagramIndex.write(index_path, groups);
+        } catch (IOException ex) {
+            Logger.getLogger(AnagramIndexStrategy.class.getName())
+                    .log(Level.SEVERE, null, ex);
+        }
+    }
+}
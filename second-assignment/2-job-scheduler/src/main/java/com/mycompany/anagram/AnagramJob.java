@@ -8,19 +8,23 @@
 
 package com.mycompany.anagram;
 
-import com.mycompany.framework.AJob;
 import com.mycompany.framework.Pair;
+import com.mycompany.framework.PairBatch;
+import com.mycompany.framework.SplittableFileJob;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.Arrays;
+import java.nio.file.Path;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 
-public class AnagramJob extends AJob<String, String> {
+public class AnagramJob extends SplittableFileJob<AnagramKey, Integer> {
 
-    private static final int LEN_THRESHOLD = 4; /* minimum word length */
-    private static String filename;
+    private static final long serialVersionUID = 1L;
+
+    static final int LEN_THRESHOLD = 4; /* minimum word length */
+    private final boolean mapped;
     
     
     /**
@@ -29,41 +33,87 @@ public class AnagramJob extends AJob<String, String> {
      * @param filename The filename from which to read the words
      */
     public AnagramJob(String filename) {
-        this.filename = filename;
+        this(Path.of(filename), 0, size(Path.of(filename)), false);
     }
     
     /**
-     * Applies the 'characters in alphabetical order' transformation.
+     * Constructor for a split of a file.
      * 
-     * @param s The string to transform
-     * @return The input string alphabetically ordered
+     * @param path The file from which to read the words
+     * @param start The first byte of the split
+     * @param end The byte after the last one of the split
+     * @param mapped True to tokenize the memory-mapped bytes of the file
+     *               instead of its decoded lines
      */
-    private String ciao(String s) {
-        char charArray[] = s.toLowerCase().toCharArray();
-        Arrays.sort(charArray);
-        return new String(charArray);
+    public AnagramJob(Path path, long start, long end, boolean mapped) {
+        super(path, start, end);
+        this.mapped = mapped;
     }
     
     /**
-     * Reads the file and returns a stream containing all pairs with format
-     * (ciao(w), w), where 'w' must have the following properties:
+     * Reads the split of the file and returns a stream containing all pairs
+     * with format (ciao(w), 1), where 'w' must have the following properties:
      *  - length greater or equal than 'LEN_THRESHOLD'
      *  - only alphabetic characters
+     * The 'characters in alphabetical order' form ciao(w) is an AnagramKey,
+     * computed straight from the buffer of the tokenizer. In mapped mode
+     * the bytes of the file are tokenized without decoding them, which is
+     * exact for ASCII, Latin-1 and UTF-8 input.
+     * 
+     * @return A stream containing all pairs with format (ciao(w), 1)
+     */
+    @Override
+    public Stream<Pair<AnagramKey, Integer>> execute() {
+        return keys().map(x -> new Pair<>(x, 1));
+    }
+    
+    /**
+     * Same as 'execute', appending the keys straight to the batch.
      * 
-     * @return A stream containing all pairs with format (ciao(w), w)
+     * @param batch The batch to fill, empty
+     * @param sink The consumer of the full batches
      */
     @Override
-    public Stream<Pair<String, String>> execute() {
+    public void executeBatch(PairBatch<AnagramKey, Integer> batch,
+            Consumer<PairBatch<AnagramKey, Integer>> sink) {
+        Integer one = 1;
+        try (Stream<AnagramKey> keys = keys()) {
+            keys.forEach(x -> {
+                if (batch.add(x, one)) {
+                    sink.accept(batch);
+                    batch.clear();
+                }
+            });
+        }
+        if (!batch.isEmpty()) {
+            sink.accept(batch);
+            batch.clear();
+        }
+    }
+    
+    /**
+     * Tokenizes the split into the keys of its words.
+     * 
+     * @return A stream of the keys
+     */
+    private Stream<AnagramKey> keys() {
+        return mapped
+            ? WordTokenizer.tokens(mapped(), LEN_THRESHOLD, AnagramKey::of)
+            : WordTokenizer.tokens(lines(), LEN_THRESHOLD, AnagramKey::of);
+    }
+    
+    /**
+     * Utility function to get the size of a file.
+     * 
+     * @param path The file
+     * @return The size in bytes
+     */
+    private static long size(Path path) {
         try {
-            return Files.lines(Paths.get(filename))
-                    .flatMap(x -> Arrays.stream(x.split("\\s").clone()))
-                    .filter(word -> word.length() > LEN_THRESHOLD 
-                            && word.matches("^[a-zA-Z]+$"))
-                    .map(x -> new Pair(ciao(x), x.toLowerCase()));
+            return Files.size(path);
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new UncheckedIOException(e);
         }
-        return Stream.empty();
     }
 
 }
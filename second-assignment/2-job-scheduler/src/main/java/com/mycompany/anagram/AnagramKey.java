@@ -0,0 +1,250 @@
+/*
+* AnagramKey
+*
+* @description: Canonical anagram signature of a word, i.e. its 'characters
+*               in alphabetical order' (ciao) form, packed in a long, and
+*               ordered as its letters.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.anagram;
+
+import com.mycompany.framework.ByteWriter;
+import com.mycompany.framework.Codec;
+import com.mycompany.framework.Hashing;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+
+public final class AnagramKey
+        implements Comparable<AnagramKey>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /* Bits used by a letter, coded from 1 ('a') to 26 ('z') */
+    private static final int BITS = 5;
+
+    /* Maximum number of letters fitting in the signature */
+    public static final int MAX_PACKED = Long.SIZE / BITS;
+
+    /* The sorted letters, packed BITS at a time, or 0 if not packed */
+    private final long signature;
+
+    /* The sorted letters of the words too long to be packed, else null */
+    private final String sorted;
+
+    private AnagramKey(long signature, String sorted) {
+        this.signature = signature;
+        this.sorted = sorted;
+    }
+
+    /**
+     * Computes the key of a word made of lowercase ASCII letters. The
+     * letters are sorted in place, so the buffer can be reused afterwards
+     * and no object but the key is allocated for short words.
+     *
+     * @param word The buffer containing the word, sorted by this method
+     * @param len The length of the word
+     * @return The key of the word
+     */
+    public static AnagramKey of(char[] word, int len) {
+        Arrays.sort(word, 0, len);
+        if (len > MAX_PACKED) {
+            return new AnagramKey(0, new String(word, 0, len));
+        }
+        long signature = 0;
+        for (int i = 0; i < len; i++) {
+            signature = (signature << BITS) | (word[i] - 'a' + 1);
+        }
+        return new AnagramKey(signature, null);
+    }
+
+    /**
+     * Rebuilds a packed key from its signature.
+     *
+     * @param signature The signature, as returned by 'getSignature'
+     * @return The key
+     */
+    public static AnagramKey ofSignature(long signature) {
+        return new AnagramKey(signature, null);
+    }
+
+    /**
+     * Computes the key of a word made of ASCII letters.
+     *
+     * @param word The word
+     * @return The key of the word
+     */
+    public static AnagramKey of(String word) {
+        char[] chars = word.toLowerCase().toCharArray();
+        return of(chars, chars.length);
+    }
+
+    /**
+     * Binary encoding of the keys: the signature for the packed ones, the
+     * sorted letters (more than 'MAX_PACKED' bytes) for the others.
+     *
+     * @return The codec of the keys
+     */
+    public static Codec<AnagramKey> codec() {
+        return new Codec<AnagramKey>() {
+            @Override
+            public byte[] encode(AnagramKey key) {
+                if (key.isPacked()) {
+                    return ByteBuffer.allocate(Long.BYTES)
+                        .putLong(key.signature)
+                        .array();
+                }
+                return key.sorted.getBytes(StandardCharsets.US_ASCII);
+            }
+
+            @Override
+            public AnagramKey decode(ByteBuffer bytes) {
+                if (bytes.remaining() == Long.BYTES) {
+                    return ofSignature(bytes.getLong(bytes.position()));
+                }
+                return new AnagramKey(0,
+                    StandardCharsets.US_ASCII.decode(bytes).toString());
+            }
+
+            @Override
+            public long hash(AnagramKey key) {
+                if (key.isPacked()) {
+                    return Hashing.mix(key.signature);
+                }
+                return Hashing.hash(encode(key));
+            }
+        };
+    }
+
+    /**
+     * Checks if the key is packed in a single long.
+     *
+     * @return True if the word has at most 'MAX_PACKED' letters
+     */
+    public boolean isPacked() {
+        return sorted == null;
+    }
+
+    /**
+     * Getter method for the packed signature.
+     *
+     * @return The signature, meaningful only if 'isPacked'
+     */
+    public long getSignature() {
+        return signature;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AnagramKey)) {
+            return false;
+        }
+        AnagramKey k = (AnagramKey) o;
+        if (sorted == null) {
+            return k.sorted == null && signature == k.signature;
+        }
+        return sorted.equals(k.sorted);
+    }
+
+    /**
+     * Compares the letters of the keys, as 'toString' would, without
+     * decoding them.
+     *
+     * @param k The other key
+     * @return A negative number, zero or a positive number if this key is
+     *         less than, equal to or greater than the other one
+     */
+    @Override
+    public int compareTo(AnagramKey k) {
+        if (sorted == null && k.sorted == null) {
+            /* The letters are never 0, so a prefix comes first */
+            return Long.compare(signature << (BITS * (MAX_PACKED - length())),
+                k.signature << (BITS * (MAX_PACKED - k.length())));
+        }
+        int len = Math.min(length(), k.length());
+        for (int i = 0; i < len; i++) {
+            int c = Character.compare(letterAt(i), k.letterAt(i));
+            if (c != 0) {
+                return c;
+            }
+        }
+        return Integer.compare(length(), k.length());
+    }
+
+    /**
+     * Gets the number of letters of the key.
+     *
+     * @return The length of the words of the key
+     */
+    private int length() {
+        if (sorted != null) {
+            return sorted.length();
+        }
+        int bits = Long.SIZE - Long.numberOfLeadingZeros(signature);
+        return (bits + BITS - 1) / BITS;
+    }
+
+    /**
+     * Gets a letter of the key.
+     *
+     * @param i The index of the letter, less than 'length'
+     * @return The i-th letter in alphabetical order
+     */
+    private char letterAt(int i) {
+        if (sorted != null) {
+            return sorted.charAt(i);
+        }
+        int shift = (length() - 1 - i) * BITS;
+        return (char) ('a' - 1 + ((signature >>> shift) & ((1 << BITS) - 1)));
+    }
+
+    @Override
+    public int hashCode() {
+        if (sorted == null) {
+            return Long.hashCode(signature * 0x9E3779B97F4A7C15L);
+        }
+        return sorted.hashCode();
+    }
+
+    /**
+     * Writes the letters of the key, as 'toString', without creating a
+     * String.
+     *
+     * @param out The writer
+     */
+    public void writeTo(ByteWriter out) {
+        if (sorted != null) {
+            out.putAscii(sorted);
+            return;
+        }
+        long mask = (1 << BITS) - 1;
+        for (int shift = (length() - 1) * BITS; shift >= 0; shift -= BITS) {
+            out.put((byte) ('a' - 1 + ((signature >>> shift) & mask)));
+        }
+    }
+
+    /**
+     * Decodes the key.
+     *
+     * @return The letters of the word in alphabetical order
+     */
+    @Override
+    public String toString() {
+        if (sorted != null) {
+            return sorted;
+        }
+        char[] letters = new char[MAX_PACKED];
+        int j = letters.length;
+        for (long s = signature; s != 0; s >>>= BITS) {
+            letters[--j] = (char) ('a' - 1 + (s & ((1 << BITS) - 1)));
+        }
+        return new String(letters, j, letters.length - j);
+    }
+}
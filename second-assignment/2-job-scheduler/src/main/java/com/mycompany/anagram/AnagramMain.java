@@ -9,23 +9,37 @@
 package com.mycompany.anagram;
 
 import com.mycompany.framework.JobSchedulerContext;
+import java.nio.file.Path;
 
 
 public class AnagramMain {
 
     /**
      * 
-     * @param args 
+     * @param args The absolute path of a directory and, optionally, the
+     *             number of jobs to execute in parallel and the directory
+     *             of the cache of the results, pruned after the run
      */
     public static void main(String[] args) {
-        if (args.length != 1) {
+        if (args.length < 1 || args.length > 3) {
             System.out.println("Please specify the absolute path of a directory!");
             return;
         }
         String dir_path = args[0];
         
         AnagramStrategy strat = new AnagramStrategy(dir_path);
-        JobSchedulerContext context = new JobSchedulerContext(strat);
-        context.run();
+        if (args.length == 3) {
+            strat.setCache(Path.of(args[2]));
+        }
+        try (JobSchedulerContext<AnagramKey, Integer> context =
+                new JobSchedulerContext<>(strat)) {
+            if (args.length >= 2) {
+                context.setParallelism(Integer.parseInt(args[1]));
+            }
+            context.run();
+        }
+        if (strat.getCache() != null) {
+            strat.getCache().prune();
+        }
     }
 }
@@ -0,0 +1,49 @@
+/*
+* AnagramSketchMain
+*
+* @description: Main class estimating the largest anagram classes in
+*               approximate mode.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.anagram;
+
+import com.mycompany.framework.Codec;
+import com.mycompany.framework.JobSchedulerContext;
+
+
+public class AnagramSketchMain {
+
+    /* Error of the counts, relative to the number of words, and the
+       probability of exceeding it */
+    private static final double EPSILON = 0.0005;
+    private static final double DELTA = 0.01;
+
+    /**
+     *
+     * @param args The absolute path of a directory, the number of classes
+     *             to report (0 for an exact run) and, optionally, the
+     *             number of jobs to execute in parallel
+     */
+    public static void main(String[] args) {
+        if (args.length < 2 || args.length > 3) {
+            System.out.println("Usage: <dir> <classes> [parallelism]");
+            return;
+        }
+        AnagramSketchStrategy strat = new AnagramSketchStrategy(args[0]);
+        try (JobSchedulerContext<AnagramKey, String> context =
+                new JobSchedulerContext<>(strat)) {
+            context.setApproximate(Integer.parseInt(args[1]), EPSILON, DELTA,
+                AnagramKey.codec(), Codec.ofString());
+            if (args.length == 3) {
+                context.setParallelism(Integer.parseInt(args[2]));
+            }
+            context.run();
+        }
+        if (strat.getCounts() != null) {
+            /* The error bounds of the estimates written */
+            System.out.print(strat.getCounts());
+        }
+    }
+}
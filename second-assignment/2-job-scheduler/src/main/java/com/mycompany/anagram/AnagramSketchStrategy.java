@@ -0,0 +1,140 @@
+/*
+* AnagramSketchStrategy
+*
+* @description: Strategy estimating the size and the number of distinct
+*               words of the largest anagram classes of the documents of a
+*               directory, for the approximate mode of the JobScheduler.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.anagram;
+
+import com.mycompany.framework.AJob;
+import com.mycompany.framework.ApproximateCounts;
+import com.mycompany.framework.ByteWriter;
+import com.mycompany.framework.Pair;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+public class AnagramSketchStrategy extends AnagramFileStrategy<String> {
+
+    private static final String FILE_OUT = "src/main/java/sketch_anagrams.txt";
+    private static final byte[] SEPARATOR = {' ', '-', ' '};
+    private Path output_path = Path.of(FILE_OUT);
+
+    /* The estimates of the last approximate run */
+    private ApproximateCounts<AnagramKey> counts = null;
+
+    /**
+     * Constructor.
+     *
+     * @param dir_path The absolute path of a directory where documents are
+     *                 stored
+     */
+    public AnagramSketchStrategy(String dir_path) {
+        super(dir_path);
+    }
+
+    /**
+     * Setter method for the output file.
+     *
+     * @param output_path The file where the classes are written
+     */
+    public void setOutputPath(Path output_path) {
+        this.output_path = output_path;
+    }
+
+    /**
+     * Getter method for the estimates of the last approximate run, with
+     * their error bounds.
+     *
+     * @return The estimates, or null if no approximate run was made
+     */
+    public ApproximateCounts<AnagramKey> getCounts() {
+        return counts;
+    }
+
+    /**
+     * Creates the job of a split, emitting every occurrence of a word, so
+     * that the count of a key is the number of its words and its distinct
+     * values are its distinct words.
+     *
+     * @param path The file
+     * @param start The first byte of the split
+     * @param end The byte after the last one of the split
+     * @return The job
+     */
+    @Override
+    protected AJob<AnagramKey, String> job(Path path, long start,
+            long end) {
+        return new AnagramWordJob(path, start, end, isMemoryMapped(), false);
+    }
+
+    /**
+     * Writes the exact classes, one per line, as "%s - %d - %d": the key,
+     * the number of words and the number of distinct words, the largest
+     * classes first. It is the reference of the approximate output.
+     *
+     * @param groups The groups of pairs generated by 'collect' phase.
+     */
+    @Override
+    protected void output(Stream<Pair<AnagramKey, List<String>>> groups) {
+        List<Pair<AnagramKey, List<String>>> sorted = groups
+            .sorted(Comparator.comparingInt(
+                (Pair<AnagramKey, List<String>> x) -> x.getValue().size())
+                .reversed()
+                .thenComparing(Pair::getKey))
+            .collect(Collectors.toList());
+        try (ByteWriter out = new ByteWriter(
+                output_path, ByteWriter.BUFFER_SIZE)) {
+            for (Pair<AnagramKey, List<String>> p : sorted) {
+                write(out, p.getKey(), p.getValue().size(),
+                    new HashSet<>(p.getValue()).size());
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(AnagramSketchStrategy.class.getName())
+                    .log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * Writes the estimated heaviest classes as 'output' does, and keeps
+     * the estimates for 'getCounts'.
+     *
+     * @param counts The estimated counts, with their error bounds
+     */
+    @Override
+    protected void outputApproximate(ApproximateCounts<AnagramKey> counts) {
+        this.counts = counts;
+        List<AnagramKey> keys = counts.heavyKeys();
+        keys.sort(Comparator.comparingLong(counts::count)
+            .reversed()
+            .thenComparing(Comparator.naturalOrder()));
+        try (ByteWriter out = new ByteWriter(
+                output_path, ByteWriter.BUFFER_SIZE)) {
+            for (AnagramKey key : keys) {
+                write(out, key, counts.count(key), counts.distinctValues(key));
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(AnagramSketchStrategy.class.getName())
+                    .log(Level.SEVERE, null, ex);
+        }
+    }
+
+    private static void write(ByteWriter out, AnagramKey key, long words,
+            long distinct) {
+        key.writeTo(out);
+        out.put(SEPARATOR).putLong(words)
+            .put(SEPARATOR).putLong(distinct)
+            .newLine();
+    }
+}
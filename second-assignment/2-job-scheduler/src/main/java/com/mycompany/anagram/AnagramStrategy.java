@@ -1,7 +1,8 @@
 /*
 * AnagramStrategy
 *
-* @description: Subclass of JobSchedulerStrategy.
+* @description: Subclass of AnagramFileStrategy counting the words of each
+*               anagram class.
 *
 * @author: m.pinna10@studenti.unipi.it
 */
@@ -9,25 +10,30 @@
 package com.mycompany.anagram;
 
 import com.mycompany.framework.AJob;
-import com.mycompany.framework.JobSchedulerStrategy;
+import com.mycompany.framework.Counting;
 import com.mycompany.framework.Pair;
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
+import com.mycompany.framework.Reducer;
+import com.mycompany.framework.ResultCache;
+import com.mycompany.framework.ShardedWriter;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
+import java.util.Comparator;
 import java.util.List;
+import java.util.function.BinaryOperator;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Stream;
 
 
-public class AnagramStrategy extends JobSchedulerStrategy<String, String> {
+public class AnagramStrategy extends AnagramFileStrategy<Integer> {
 
-    private static final String FILE_EXTENSION = ".txt";
     private static final String FILE_OUT = "src/main/java/count_anagrams.txt";
-    private final String dir_path;
+    private static final byte[] SEPARATOR = {' ', '-', ' '};
+    private Path output_path = Path.of(FILE_OUT);
+    private int shards = 1;
+    private ResultCache<AnagramKey, Integer> cache = null;
     
     /**
      * Constructor.
@@ -36,70 +42,156 @@ public class AnagramStrategy extends JobSchedulerStrategy<String, String> {
      *                 stored
      */
     public AnagramStrategy(String dir_path) {
-        checkDirectory(dir_path);
-        this.dir_path = dir_path;
+        super(dir_path);
     }
     
     /**
-     * Visits a directory and creates a new job for each file ending with
-     * 'FILE_EXTENSION' in that directory.
+     * Setter method for the output file.
      * 
-     * @return A stream of jobs
+     * @param output_path The file where the counts are written
+     */
+    public void setOutputPath(Path output_path) {
+        this.output_path = output_path;
+    }
+    
+    /**
+     * Setter method for the number of output files. With more than one,
+     * the i-th file is named after the output file, e.g.
+     * 'count_anagrams-i.txt', and the files are written in parallel.
+     * 
+     * @param shards The number of output files
+     */
+    public void setOutputShards(int shards) {
+        if (shards < 1) {
+            throw new RuntimeException("Shards must be positive!");
+        }
+        this.shards = shards;
+    }
+    
+    /**
+     * Setter method for the cache of the output of the jobs. When it is set,
+     * the splits of the files unchanged since the previous run are not
+     * tokenized again.
+     * 
+     * @param cache_dir The directory of the cache, null to disable it
+     */
+    public void setCache(Path cache_dir) {
+        this.cache = cache_dir == null
+            ? null
+            : new ResultCache<>(cache_dir, reducer().getOperator());
+    }
+    
+    /**
+     * Getter method for the cache of the output of the jobs.
+     * 
+     * @return The cache, or null if it is disabled
+     */
+    public ResultCache<AnagramKey, Integer> getCache() {
+        return cache;
+    }
+    
+    /**
+     * Creates the job of a split, going through the cache if it is set.
+     * 
+     * @param path The file
+     * @param start The first byte of the split
+     * @param end The byte after the last one of the split
+     * @return The job
      */
     @Override
-    protected Stream<AJob<String, String>> emit() {
-        try {
-            var paths = Files.walk(Path.of(dir_path));
-            return paths
-                .filter(Files::isRegularFile)
-                .filter(x -> x.toString().endsWith(FILE_EXTENSION))
-                .map(j -> new AnagramJob(j.toString()));
-        } catch (IOException e) {
-            e.printStackTrace();
+    protected AJob<AnagramKey, Integer> job(Path path, long start,
+            long end) {
+        AnagramJob job = new AnagramJob(path, start, end, isMemoryMapped());
+        return cache == null ? job : cache.wrap(job);
+    }
+    
+    /**
+     * Sums the counts of the words, both within a job and in 'collect'.
+     * The sum is serializable, so that cluster workers can combine too.
+     * 
+     * @return The reducer for the word counts
+     */
+    @Override
+    protected Reducer<Integer> reducer() {
+        return new Reducer<>(0,
+            (BinaryOperator<Integer> & Serializable) Integer::sum);
+    }
+    
+    /**
+     * Counts the words in a CountTable, storing the packed keys as longs.
+     * 
+     * @return The description of the word counts
+     */
+    @Override
+    protected Counting<AnagramKey, Integer> counting() {
+        return new Counting<>(x -> x, x -> (int) x, new KeyPacker());
+    }
+    
+    /**
+     * Packs the keys of the words of at most 'AnagramKey.MAX_PACKED'
+     * letters in their signature.
+     */
+    private static class KeyPacker
+            implements Counting.KeyPacker<AnagramKey> {
+        @Override
+        public boolean canPack(AnagramKey key) {
+            return key.isPacked();
+        }
+
+        @Override
+        public long pack(AnagramKey key) {
+            return key.getSignature();
+        }
+
+        @Override
+        public AnagramKey unpack(long packed) {
+            return AnagramKey.ofSignature(packed);
         }
-        return Stream.empty();
     }
     
     /**
-     * Writes the list of ciao keys and the number of words associated with 
-     * each key, one per line.
+     * Ranks the largest anagram classes first, then by the letters of the
+     * key.
      * 
-     * @param groups The groups of pairs generated by 'collect' phase.
+     * @return The ranking of the groups
      */
     @Override
-    protected void output(Stream<Pair<String, List<String>>> groups) {
-        
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(FILE_OUT))){
-            
-            groups.forEach(p -> {
-                
-                String line = String.format("%s - %d", 
-                        p.getKey(), 
-                        p.getValue().size());
-                
-                try {
-                    bw.write(line);
-                    bw.newLine();
-                } catch (IOException ex) {
-                    Logger.getLogger(AnagramStrategy.class.getName())
-                            .log(Level.SEVERE, null, ex);
-                }
-            });  
-        } catch (IOException ex) {
-            Logger.getLogger(AnagramStrategy.class.getName())
-                    .log(Level.SEVERE, null, ex);
+    protected Comparator<Pair<AnagramKey, List<Integer>>> ranking() {
+        Comparator<Pair<AnagramKey, List<Integer>>> by_count =
+            Comparator.comparingInt(x -> count(x.getValue()));
+        return by_count
+            .reversed()
+            .thenComparing(Pair::getKey);
+    }
+    
+    private static int count(List<Integer> values) {
+        int sum = 0;
+        for (int x : values) {
+            sum += x;
         }
+        return sum;
     }
     
     /**
-     * Utility function for checking if a given path is a directory.
+     * Writes the list of ciao keys and the number of words associated with 
+     * each key, one per line, as "%s - %d". The lines are appended as bytes
+     * to the buffer of a ByteWriter, with no String.format nor encoding;
+     * with several shards, each shard file is written by its own thread.
      * 
-     * @param dir_path The path to check if it is a directory.
+     * @param groups The groups of pairs generated by 'collect' phase.
      */
-    private void checkDirectory(String dir_path) {
-        File f = new File(dir_path);
-        if(!f.isDirectory()) {
-            throw new RuntimeException("Given path is not a directory!");
+    @Override
+    protected void output(Stream<Pair<AnagramKey, List<Integer>>> groups) {
+        ShardedWriter<Pair<AnagramKey, List<Integer>>> writer =
+            new ShardedWriter<>(output_path, shards, (p, out) -> {
+                p.getKey().writeTo(out);
+                out.put(SEPARATOR).putLong(count(p.getValue())).newLine();
+            });
+        try {
+            writer.write(groups);
+        } catch (IOException | UncheckedIOException ex) {
+            Logger.getLogger(AnagramStrategy.class.getName())
+                    .log(Level.SEVERE, null, ex);
         }
     }
     
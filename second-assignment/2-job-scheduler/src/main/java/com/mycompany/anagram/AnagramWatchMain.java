@@ -0,0 +1,51 @@
+/*
+* AnagramWatchMain
+*
+* @description: Main class for the AnagramJobScheduler in streaming mode,
+*               updating the anagram counts as documents arrive.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.anagram;
+
+import com.mycompany.framework.JobSchedulerContext;
+import com.mycompany.framework.StreamingJobScheduler;
+import java.nio.file.Path;
+import java.time.Duration;
+
+
+public class AnagramWatchMain {
+
+    private static final long REFRESH_SECONDS = 10;
+
+    /**
+     * Watches a directory until the process is killed, rewriting the output
+     * periodically.
+     * 
+     * @param args The absolute path of a directory and, optionally, the
+     *             number of seconds between two refreshes of the output
+     */
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 1 || args.length > 2) {
+            System.out.println("Please specify the absolute path of a directory!");
+            return;
+        }
+        String dir_path = args[0];
+        long refresh = args.length == 2
+            ? Long.parseLong(args[1])
+            : REFRESH_SECONDS;
+        
+        AnagramStrategy strat = new AnagramStrategy(dir_path);
+        JobSchedulerContext<AnagramKey, Integer> context =
+            new JobSchedulerContext<>(strat);
+        StreamingJobScheduler<AnagramKey, Integer> scheduler =
+            new StreamingJobScheduler<>(
+                context, Path.of(dir_path), strat::jobs);
+        
+        scheduler.start();
+        scheduler.refresh();
+        scheduler.setRefreshInterval(Duration.ofSeconds(refresh));
+        Thread.currentThread().join();
+    }
+}
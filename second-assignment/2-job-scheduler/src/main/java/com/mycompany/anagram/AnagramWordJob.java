@@ -0,0 +1,74 @@
+/*
+* AnagramWordJob
+*
+* @description: Job emitting the (distinct) words of a split with their
+*               anagram key, to build the anagram index.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.anagram;
+
+import com.mycompany.framework.Pair;
+import com.mycompany.framework.SplittableFileJob;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+
+public class AnagramWordJob extends SplittableFileJob<AnagramKey, String> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final boolean mapped;
+    private final boolean distinct;
+
+    /**
+     * Constructor for a split of a file, emitting its distinct words.
+     * 
+     * @param path The file from which to read the words
+     * @param start The first byte of the split
+     * @param end The byte after the last one of the split
+     * @param mapped True to tokenize the memory-mapped bytes of the file
+     *               instead of its decoded lines
+     */
+    public AnagramWordJob(Path path, long start, long end, boolean mapped) {
+        this(path, start, end, mapped, true);
+    }
+
+    /**
+     * Constructor for a split of a file.
+     * 
+     * @param path The file from which to read the words
+     * @param start The first byte of the split
+     * @param end The byte after the last one of the split
+     * @param mapped True to tokenize the memory-mapped bytes of the file
+     *               instead of its decoded lines
+     * @param distinct True to emit each word once, false to emit every
+     *                 occurrence
+     */
+    public AnagramWordJob(Path path, long start, long end, boolean mapped,
+            boolean distinct) {
+        super(path, start, end);
+        this.mapped = mapped;
+        this.distinct = distinct;
+    }
+
+    /**
+     * Reads the split of the file and returns a stream containing a pair
+     * (ciao(w), w) for each (distinct) word 'w' accepted by AnagramJob.
+     * 
+     * @return A stream containing the pairs (ciao(w), w)
+     */
+    @Override
+    public Stream<Pair<AnagramKey, String>> execute() {
+        Stream<String> words = mapped
+            ? WordTokenizer.tokens(mapped(), AnagramJob.LEN_THRESHOLD,
+                (word, len) -> new String(word, 0, len))
+            : WordTokenizer.words(lines(), AnagramJob.LEN_THRESHOLD);
+        if (distinct) {
+            words = words.distinct();
+        }
+        return words
+            .map(x -> new Pair<>(AnagramKey.of(x), x));
+    }
+}
@@ -0,0 +1,222 @@
+/*
+* SubAnagramIndex
+*
+* @description: In-memory index of the anagram classes answering sub-anagram
+*               (margana) queries, i.e. finding the words made of a subset
+*               of the letters of a word.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.anagram;
+
+import com.mycompany.framework.Pair;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+public final class SubAnagramIndex {
+
+    private static final int LETTERS = 26;
+
+    /* Trie of the keys, i.e. of the sorted letters of the words. The
+     * children of a node are stored contiguously, in letter order, from
+     * 'first_child'; 'child_mask' has the bit of the letter of each child,
+     * so the child of letter c is at first_child + bitCount(mask below c).
+     */
+    private int[] child_mask;
+    private int[] first_child;
+
+    /* Per node, the class ending there (or -1), and the length of the
+     * longest key below it, counting from the node */
+    private int[] group;
+    private int[] height;
+    private int node_count = 0;
+
+    /* The distinct words of each class, sorted */
+    private final List<List<String>> words;
+
+    private SubAnagramIndex(List<String> keys, List<List<String>> words) {
+        this.words = words;
+        int capacity = Math.max(16, keys.size() * 2);
+        this.child_mask = new int[capacity];
+        this.first_child = new int[capacity];
+        this.group = new int[capacity];
+        this.height = new int[capacity];
+        build(keys, 0, keys.size(), 0, allocate(1));
+    }
+
+    /**
+     * Builds the index of the anagram classes, e.g. in the 'output' of a
+     * strategy grouping the words by AnagramKey. Words that are not made
+     * of ASCII letters are ignored, and the words of a key given more than
+     * once (e.g. by the groups of several runs) are merged.
+     *
+     * @param groups The words of each key, possibly repeated
+     * @return The index
+     */
+    public static SubAnagramIndex of(
+            Stream<Pair<AnagramKey, List<String>>> groups) {
+        /* Keys sorted and distinct, as the trie needs them */
+        TreeMap<String, TreeSet<String>> classes = new TreeMap<>();
+        groups.forEach(x -> {
+            String key = x.getKey().toString();
+            if (key.chars().allMatch(c -> letter(c) >= 0)) {
+                classes.computeIfAbsent(key, k -> new TreeSet<>())
+                    .addAll(x.getValue());
+            }
+        });
+        List<String> keys = new ArrayList<>(classes.keySet());
+        List<List<String>> words = classes.values().stream()
+            .map(List::copyOf)
+            .collect(Collectors.toList());
+        return new SubAnagramIndex(keys, words);
+    }
+
+    /**
+     * Gets the number of keys of the index.
+     *
+     * @return The number of anagram classes
+     */
+    public int size() {
+        return words.size();
+    }
+
+    /**
+     * Finds the sub-anagrams of a word: the indexed words using each letter
+     * at most as many times as the word does. The trie is walked along the
+     * sorted letters of the keys, so a path is followed only while it is
+     * contained in the word: the children are filtered by intersecting
+     * their letter mask with the mask of the letters still available (by
+     * the count vector of the word) and not smaller than the last one, and
+     * the subtrees whose keys are all too short are skipped. The keys that
+     * are not sub-multisets of the word are never reached. Safe for
+     * concurrent use.
+     *
+     * @param word A word
+     * @param min_len The minimum length of the sub-anagrams
+     * @return The sub-anagrams, including the anagrams of the word, in the
+     *         alphabetical order of their keys; empty if the word is not
+     *         made of ASCII letters
+     */
+    public List<String> find(String word, int min_len) {
+        int[] counts = new int[LETTERS];
+        int available = 0;
+        for (int i = 0; i < word.length(); i++) {
+            int c = letter(word.charAt(i));
+            if (c < 0) {
+                return List.of();
+            }
+            counts[c]++;
+            available |= 1 << c;
+        }
+        List<String> found = new ArrayList<>();
+        if (!word.isEmpty()) {
+            find(0, 0, available, counts, min_len, found);
+        }
+        return found;
+    }
+
+    private void find(int node, int depth, int available, int[] counts,
+            int min_len, List<String> found) {
+        if (group[node] >= 0 && depth >= min_len) {
+            found.addAll(words.get(group[node]));
+        }
+        int mask = child_mask[node];
+        for (int m = mask & available; m != 0; m &= m - 1) {
+            int c = Integer.numberOfTrailingZeros(m);
+            int child = first_child[node]
+                + Integer.bitCount(mask & ((1 << c) - 1));
+            if (depth + 1 + height[child] < min_len) {
+                continue;
+            }
+            /* The next letters of the key cannot be smaller than c */
+            int next = available & -(1 << c);
+            if (--counts[c] == 0) {
+                next &= ~(1 << c);
+            }
+            find(child, depth + 1, next, counts, min_len, found);
+            counts[c]++;
+        }
+    }
+
+    /**
+     * Builds the subtree of the keys sharing a prefix.
+     *
+     * @param keys The sorted keys
+     * @param lo The first key with the prefix
+     * @param hi The key after the last one with the prefix
+     * @param depth The length of the prefix
+     * @param node The node of the prefix
+     * @return The height of the node
+     */
+    private int build(List<String> keys, int lo, int hi, int depth,
+            int node) {
+        group[node] = -1;
+        if (lo < hi && keys.get(lo).length() == depth) {
+            group[node] = lo++;
+        }
+
+        /* One child per distinct letter at 'depth', in order */
+        int mask = 0;
+        for (int i = lo; i < hi; i++) {
+            mask |= 1 << letter(keys.get(i).charAt(depth));
+        }
+        int first = allocate(Integer.bitCount(mask));
+        child_mask[node] = mask;
+        first_child[node] = first;
+
+        int max = 0;
+        for (int child = first; lo < hi; child++) {
+            char c = keys.get(lo).charAt(depth);
+            int end = lo + 1;
+            while (end < hi && keys.get(end).charAt(depth) == c) {
+                end++;
+            }
+            max = Math.max(max, 1 + build(keys, lo, end, depth + 1, child));
+            lo = end;
+        }
+        height[node] = max;
+        return max;
+    }
+
+    /**
+     * Allocates consecutive nodes.
+     *
+     * @param n The number of nodes
+     * @return The first of the nodes
+     */
+    private int allocate(int n) {
+        if (node_count + n > group.length) {
+            int capacity = Math.max(group.length * 2, node_count + n);
+            child_mask = Arrays.copyOf(child_mask, capacity);
+            first_child = Arrays.copyOf(first_child, capacity);
+            group = Arrays.copyOf(group, capacity);
+            height = Arrays.copyOf(height, capacity);
+        }
+        int first = node_count;
+        node_count += n;
+        return first;
+    }
+
+    /**
+     * Codes an ASCII letter, ignoring its case.
+     *
+     * @param c A character
+     * @return The letter from 0 ('a') to 25 ('z'), or -1
+     */
+    private static int letter(int c) {
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a';
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A';
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+* WordTokenizer
+*
+* @description: Hand-rolled tokenizer extracting the words accepted by
+*               AnagramJob from a stream of lines.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.anagram;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+
+class WordTokenizer<T> extends Spliterators.AbstractSpliterator<T> {
+
+    /**
+     * Builds the token emitted for a word, from the buffer holding it.
+     * The buffer is reused for the following words.
+     */
+    interface WordMapper<T> {
+        T map(char[] word, int len);
+    }
+
+    /* The lines to tokenize */
+    private final Iterator<? extends CharSequence> lines;
+
+    /* Minimum length (excluded) of a word */
+    private final int min_length;
+
+    /* Builds the tokens from the words */
+    private final WordMapper<T> mapper;
+
+    /* The line being scanned and the position of the scan */
+    private CharSequence line = "";
+    private int pos = 0;
+
+    /* Reusable buffer for the lowercase word */
+    private char[] word = new char[64];
+
+    /**
+     * Constructor.
+     *
+     * @param lines The lines to tokenize
+     * @param min_length The length a word must exceed
+     * @param mapper Builds the tokens from the words
+     */
+    private WordTokenizer(Iterator<? extends CharSequence> lines,
+            int min_length,
+            WordMapper<T> mapper) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        this.lines = lines;
+        this.min_length = min_length;
+        this.mapper = mapper;
+    }
+
+    /**
+     * Splits lines on whitespace (as the regex '\s') and keeps the tokens
+     * longer than 'min_length' made of ASCII letters only, lowercased.
+     * Equivalent to splitting with "\\s" and matching "^[a-zA-Z]+$", but
+     * the filters are applied while scanning and a String is created only
+     * for the words that pass them.
+     *
+     * @param lines The lines to tokenize
+     * @param min_length The length a word must exceed
+     * @return A stream of the lowercase words; closing it closes 'lines'
+     */
+    static Stream<String> words(Stream<String> lines, int min_length) {
+        return tokens(lines, min_length,
+            (word, len) -> new String(word, 0, len));
+    }
+
+    /**
+     * Same as 'words', but hands each lowercase word, still in the reusable
+     * buffer, to 'mapper' instead of creating a String.
+     *
+     * @param lines The lines to tokenize
+     * @param min_length The length a word must exceed
+     * @param mapper Builds the tokens from the words
+     * @return A stream of the tokens; closing it closes 'lines'
+     */
+    static <T> Stream<T> tokens(Stream<? extends CharSequence> lines,
+            int min_length, WordMapper<T> mapper) {
+        return StreamSupport
+            .stream(new WordTokenizer<>(lines.iterator(), min_length, mapper),
+                false)
+            .onClose(lines::close);
+    }
+
+    /**
+     * Same as 'tokens', but scans raw bytes, each one being a character
+     * (ASCII or Latin-1). For UTF-8 input the result is the same as for the
+     * decoded lines, since multi-byte characters are neither letters nor
+     * separators for the tokenizer.
+     *
+     * @param bytes The bytes to tokenize
+     * @param min_length The length a word must exceed
+     * @param mapper Builds the tokens from the words
+     * @return A stream of the tokens
+     */
+    static <T> Stream<T> tokens(ByteBuffer bytes, int min_length,
+            WordMapper<T> mapper) {
+        return tokens(Stream.of(new Latin1(bytes)), min_length, mapper);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        while (true) {
+            while (pos < line.length()) {
+                T w = scan();
+                if (w != null) {
+                    action.accept(w);
+                    return true;
+                }
+            }
+            if (!lines.hasNext()) {
+                return false;
+            }
+            line = lines.next();
+            pos = 0;
+        }
+    }
+
+    /**
+     * Scans the next token of the line.
+     *
+     * @return The token if it is a valid word, null otherwise
+     */
+    private T scan() {
+        CharSequence s = line;
+        int n = s.length();
+        int i = pos;
+
+        /* Skipping separators */
+        while (i < n && isSpace(s.charAt(i))) {
+            i++;
+        }
+        int begin = i;
+        boolean valid = true;
+        int len = 0;
+        while (i < n) {
+            char c = s.charAt(i);
+            if (isSpace(c)) {
+                break;
+            }
+            if (valid) {
+                char lower = (char) (c | 0x20);
+                if (lower >= 'a' && lower <= 'z') {
+                    if (len == word.length) {
+                        word = Arrays.copyOf(word, len * 2);
+                    }
+                    word[len++] = lower;
+                } else {
+                    valid = false;
+                }
+            }
+            i++;
+        }
+        pos = i;
+        if (!valid || i - begin <= min_length) {
+            return null;
+        }
+        return mapper.map(word, len);
+    }
+
+    /**
+     * Checks if a character is a separator for the regex '\s', i.e.
+     * [ \t\n\x0B\f\r].
+     *
+     * @param c The character to check
+     * @return True if it is a separator
+     */
+    private static boolean isSpace(char c) {
+        return c == ' ' || (c >= '\t' && c <= '\r');
+    }
+
+    /**
+     * View of a buffer of single-byte characters as a CharSequence, so that
+     * it can be scanned without decoding.
+     */
+    private static class Latin1 implements CharSequence {
+        private final ByteBuffer bytes;
+
+        Latin1(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int length() {
+            return bytes.limit();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (bytes.get(index) & 0xff);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new Latin1(bytes.duplicate().position(start).limit(end)
+                .slice());
+        }
+
+        @Override
+        public String toString() {
+            byte[] b = new byte[bytes.limit()];
+            bytes.duplicate().get(b);
+            return new String(b, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
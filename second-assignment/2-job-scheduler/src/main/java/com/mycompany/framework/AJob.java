@@ -1,9 +1,46 @@
 package com.mycompany.framework;
 
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 public abstract class AJob<K,V>{
 
     public abstract Stream<Pair<K,V>> execute();
 
+    /**
+     * Batch-oriented alternative to 'execute': the output of the job is
+     * appended to 'batch', which is handed to 'sink' every time it is full
+     * (and once more at the end, if not empty) and then cleared. The batch
+     * is reused, so 'sink' must consume it before returning.
+     * This implementation adapts 'execute'; jobs override it to fill the
+     * batch without creating a Pair per record.
+     *
+     * @param batch The batch to fill, empty
+     * @param sink The consumer of the full batches
+     */
+    public void executeBatch(PairBatch<K,V> batch,
+            Consumer<PairBatch<K,V>> sink) {
+        try (Stream<Pair<K,V>> pairs = execute()) {
+            pairs.forEach(x -> {
+                if (batch.add(x.getKey(), x.getValue())) {
+                    sink.accept(batch);
+                    batch.clear();
+                }
+            });
+        }
+        if (!batch.isEmpty()) {
+            sink.accept(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Size of the input of the job, reported by the instrumentation.
+     *
+     * @return The number of bytes read by the job, 0 if unknown
+     */
+    public long bytesRead() {
+        return 0;
+    }
+
 }
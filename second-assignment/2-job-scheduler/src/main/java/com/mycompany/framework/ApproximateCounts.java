@@ -0,0 +1,283 @@
+/*
+* ApproximateCounts
+*
+* @description: Fixed-size summary of the output of the jobs in approximate
+*               mode: estimated counts of the keys, number of distinct keys
+*               and number of distinct values of a key, with error bounds.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.ToLongFunction;
+
+
+public final class ApproximateCounts<K> {
+
+    /* Precision of the sketch of the distinct keys: 16 KiB, 0.8% error */
+    private static final int KEYS_PRECISION = 14;
+
+    /* Precision of the sketches of the distinct values: 64 B, 13% error */
+    private static final int VALUES_PRECISION = 6;
+
+    /* The counts of the keys */
+    private final CountMinSketch counts;
+
+    /* The distinct keys */
+    private final HyperLogLog keys;
+
+    /* Hashes a key to 64 bits */
+    private final ToLongFunction<K> key_hash;
+
+    /* The keys with the largest estimated counts, at most 'heavy_keys',
+     * also ranked by estimate, the lightest first; 'sequence' breaks the
+     * ties of the ranking */
+    private final int heavy_keys;
+    private final Map<K, Heavy<K>> candidates = new HashMap<>();
+    private final TreeSet<Heavy<K>> ranking = new TreeSet<>(
+        Comparator.comparingLong((Heavy<K> x) -> x.estimate)
+            .thenComparingLong(x -> x.sequence));
+    private long sequence = 0;
+
+    /**
+     * A heavy key: the estimate of its count when it was last seen, and a
+     * small HyperLogLog of its values since it became a candidate. The
+     * estimate must not change while the key is in the ranking.
+     */
+    private static class Heavy<K> {
+        K key;
+        long estimate;
+        long sequence;
+        final byte[] values = new byte[1 << VALUES_PRECISION];
+
+        Heavy(K key, long estimate) {
+            this.key = key;
+            this.estimate = estimate;
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param heavy_keys The number of keys reported with their counts
+     * @param epsilon The error of the counts, relative to the total count
+     * @param delta The probability of exceeding the error
+     * @param key_hash Hashes a key to 64 bits; two keys with the same hash
+     *                 are counted as one
+     */
+    ApproximateCounts(int heavy_keys, double epsilon, double delta,
+            ToLongFunction<K> key_hash) {
+        this.heavy_keys = heavy_keys;
+        this.key_hash = key_hash;
+        this.counts = new CountMinSketch(epsilon, delta);
+        this.keys = new HyperLogLog(KEYS_PRECISION);
+    }
+
+    /**
+     * Adds a pair emitted by a job.
+     *
+     * @param key The key
+     * @param count The count added by the value
+     * @param value_hash The 64-bit hash of the value
+     */
+    void add(K key, long count, long value_hash) {
+        long h = key_hash.applyAsLong(key);
+        long estimate = counts.add(h, count);
+        keys.add(h);
+
+        Heavy<K> heavy = candidates.get(key);
+        if (heavy != null) {
+            ranking.remove(heavy);
+            heavy.estimate = estimate;
+            ranking.add(heavy);
+        } else if (candidates.size() < heavy_keys) {
+            heavy = new Heavy<>(key, estimate);
+            heavy.sequence = sequence++;
+            candidates.put(key, heavy);
+            ranking.add(heavy);
+        } else if (heavy_keys > 0 && estimate > ranking.first().estimate) {
+            /* Replacing the lightest candidate */
+            heavy = ranking.pollFirst();
+            candidates.remove(heavy.key);
+            heavy.key = key;
+            heavy.estimate = estimate;
+            heavy.sequence = sequence++;
+            Arrays.fill(heavy.values, (byte) 0);
+            candidates.put(key, heavy);
+            ranking.add(heavy);
+        }
+        if (heavy != null) {
+            HyperLogLog.add(heavy.values, 0, VALUES_PRECISION, value_hash);
+        }
+    }
+
+    /**
+     * Adds the sketches of another run (e.g. of another job) with the same
+     * configuration. The candidates of both are ranked by their merged
+     * estimates, and the heaviest ones are kept.
+     *
+     * @param other The other counts
+     */
+    void merge(ApproximateCounts<K> other) {
+        counts.merge(other.counts);
+        keys.merge(other.keys);
+
+        other.candidates.forEach((key, heavy) -> {
+            Heavy<K> mine = candidates.putIfAbsent(key, heavy);
+            if (mine != null) {
+                HyperLogLog.merge(mine.values, heavy.values);
+            }
+        });
+        /* Ranking again, by the merged estimates */
+        ranking.clear();
+        for (Heavy<K> heavy : candidates.values()) {
+            heavy.estimate = counts.estimate(key_hash.applyAsLong(heavy.key));
+            heavy.sequence = sequence++;
+            ranking.add(heavy);
+        }
+        while (ranking.size() > heavy_keys) {
+            candidates.remove(ranking.pollFirst().key);
+        }
+    }
+
+    /**
+     * Gets the keys with the largest estimated counts. A key whose count is
+     * above the error of the counts is reported with high probability,
+     * unless more than 'heavy_keys' keys are.
+     *
+     * @return At most 'heavy_keys' keys, the heaviest first
+     */
+    public List<K> heavyKeys() {
+        List<K> heavy = new ArrayList<>(ranking.size());
+        Iterator<Heavy<K>> it = ranking.descendingIterator();
+        while (it.hasNext()) {
+            heavy.add(it.next().key);
+        }
+        return heavy;
+    }
+
+    /**
+     * Estimates the count of a key.
+     *
+     * @param key The key
+     * @return The estimate, at least the true count and, with probability
+     *         'getConfidence', at most the true count plus 'getCountError'
+     */
+    public long count(K key) {
+        return counts.estimate(key_hash.applyAsLong(key));
+    }
+
+    /**
+     * Estimates the number of distinct values of a heavy key, e.g. of the
+     * distinct words of an anagram class when the values are the words.
+     * The values a job emitted before the key became one of its candidates
+     * are missed, which is unlikely for the values of a heavy key.
+     *
+     * @param key One of the 'heavyKeys'
+     * @return The estimate, within 'getValuesError', or 0 if the key is not
+     *         a heavy key
+     */
+    public long distinctValues(K key) {
+        Heavy<K> heavy = candidates.get(key);
+        if (heavy == null) {
+            return 0;
+        }
+        return HyperLogLog.estimate(heavy.values, 0, VALUES_PRECISION);
+    }
+
+    /**
+     * Estimates the number of distinct keys.
+     *
+     * @return The estimate, within 'getKeysError' of the true number
+     */
+    public long distinctKeys() {
+        return keys.estimate();
+    }
+
+    /**
+     * Gets the exact sum of the counts of all the keys.
+     *
+     * @return The total count
+     */
+    public long getTotal() {
+        return counts.getTotal();
+    }
+
+    /**
+     * Gets the bound on the overestimate of the count of a key.
+     *
+     * @return The absolute error of 'count'
+     */
+    public long getCountError() {
+        return counts.getError();
+    }
+
+    /**
+     * Gets the probability that the count of a key is within the error.
+     *
+     * @return The confidence of 'getCountError'
+     */
+    public double getConfidence() {
+        return 1 - counts.getDelta();
+    }
+
+    /**
+     * Gets the relative standard error of 'distinctKeys'.
+     *
+     * @return The standard error, e.g. 0.01 for 1%
+     */
+    public double getKeysError() {
+        return keys.getStandardError();
+    }
+
+    /**
+     * Gets the relative standard error of 'distinctValues'.
+     *
+     * @return The standard error, e.g. 0.01 for 1%
+     */
+    public double getValuesError() {
+        return HyperLogLog.standardError(VALUES_PRECISION);
+    }
+
+    /**
+     * Gets the memory used by the sketches, which does not depend on the
+     * input.
+     *
+     * @return The size in bytes, the heavy keys themselves excluded
+     */
+    public long bytes() {
+        return counts.bytes() + keys.bytes()
+            + ((long) heavy_keys << VALUES_PRECISION);
+    }
+
+    /**
+     * Summary report of the sketches.
+     *
+     * @return One line for the total count, one per estimate and its error
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%d records, %d KiB of sketches%n",
+            getTotal(), bytes() >> 10));
+        sb.append(String.format(
+            "  distinct keys   ~%d (standard error %.1f%%)%n",
+            distinctKeys(), 100 * getKeysError()));
+        sb.append(String.format(
+            "  key counts      +%d at most (confidence %.1f%%)%n",
+            getCountError(), 100 * getConfidence()));
+        sb.append(String.format(
+            "  distinct values standard error %.1f%% per key%n",
+            100 * getValuesError()));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,163 @@
+/*
+* ByteWriter
+*
+* @description: Writer appending text straight into a reusable byte buffer,
+*               flushed to a file through a FileChannel.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+
+public final class ByteWriter implements Closeable {
+
+    /* Default size of the buffer */
+    public static final int BUFFER_SIZE = 1 << 16;
+
+    /* The line separator of the platform, as BufferedWriter.newLine */
+    private static final byte[] NEW_LINE =
+        System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+
+    /* Scratch space for the digits of a number */
+    private final byte[] digits = new byte[20];
+
+    /**
+     * Constructor. The file is created, or truncated if it exists.
+     *
+     * @param path The file to write
+     * @param buffer_size The size of the buffer in bytes
+     */
+    public ByteWriter(Path path, int buffer_size) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        this.buffer = ByteBuffer.allocateDirect(buffer_size);
+    }
+
+    /**
+     * Appends a byte.
+     *
+     * @param b The byte
+     * @return This writer
+     */
+    public ByteWriter put(byte b) {
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        buffer.put(b);
+        return this;
+    }
+
+    /**
+     * Appends bytes.
+     *
+     * @param bytes The bytes
+     * @return This writer
+     */
+    public ByteWriter put(byte[] bytes) {
+        int i = 0;
+        while (i < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            int n = Math.min(buffer.remaining(), bytes.length - i);
+            buffer.put(bytes, i, n);
+            i += n;
+        }
+        return this;
+    }
+
+    /**
+     * Appends characters, one byte each. Only for ASCII text: no encoding
+     * is done.
+     *
+     * @param s The text
+     * @return This writer
+     */
+    public ByteWriter putAscii(CharSequence s) {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            put((byte) s.charAt(i));
+        }
+        return this;
+    }
+
+    /**
+     * Appends text, encoded as UTF-8.
+     *
+     * @param s The text
+     * @return This writer
+     */
+    public ByteWriter putString(String s) {
+        return put(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Appends the decimal digits of a number, without creating a String.
+     *
+     * @param value The number
+     * @return This writer
+     */
+    public ByteWriter putLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            return putAscii(Long.toString(value));
+        }
+        if (value < 0) {
+            put((byte) '-');
+            value = -value;
+        }
+        int i = digits.length;
+        do {
+            digits[--i] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        for (; i < digits.length; i++) {
+            put(digits[i]);
+        }
+        return this;
+    }
+
+    /**
+     * Appends the line separator.
+     *
+     * @return This writer
+     */
+    public ByteWriter newLine() {
+        return put(NEW_LINE);
+    }
+
+    /**
+     * Writes the buffer to the file.
+     */
+    public void flush() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
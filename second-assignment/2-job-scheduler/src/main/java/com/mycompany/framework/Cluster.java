@@ -0,0 +1,240 @@
+/*
+* Cluster
+*
+* @description: Coordinator of the cluster mode: launches worker processes
+*               on the local machine, ships the jobs to them over sockets and
+*               gathers their output, re-running the jobs of crashed workers.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BinaryOperator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+class Cluster<K,V> {
+
+    /* How long the workers have to connect, in milliseconds */
+    private static final int CONNECT_TIMEOUT = 30_000;
+
+    /* How often the handlers check whether the run is over */
+    private static final long POLL_MILLIS = 100;
+
+    private final int workers;
+    private final List<String> jvm_options;
+    private final int partitions;
+
+    /* Sent with the tasks if it is serializable, null otherwise */
+    private final BinaryOperator<V> combiner;
+
+    /* The jobs, their output and the ids of the jobs still to run */
+    private List<AJob<K,V>> jobs;
+    private List<List<List<Pair<K,V>>>> results;
+    private final BlockingQueue<Integer> pending = new LinkedBlockingQueue<>();
+    private int remaining;
+
+    /* The first failure of a job, which fails the run */
+    private RuntimeException failure;
+
+    /**
+     * Constructor.
+     *
+     * @param workers The number of worker processes
+     * @param jvm_options The options of the JVMs of the workers
+     * @param combiner The combiner of the strategy, or null
+     * @param partitions The number of partitions of the output of a job
+     */
+    Cluster(int workers, List<String> jvm_options, BinaryOperator<V> combiner,
+            int partitions) {
+        this.workers = workers;
+        this.jvm_options = jvm_options;
+        this.combiner = combiner instanceof Serializable ? combiner : null;
+        this.partitions = partitions;
+    }
+
+    /**
+     * Runs the jobs on the workers. Each connected worker is served by its
+     * own thread, taking the next job to run from a shared queue; if the
+     * worker dies, its current job is put back in the queue and run by
+     * another worker.
+     *
+     * @param stream The jobs to run; they must be serializable
+     * @return For each job, in emission order, the list of pairs of each
+     *         partition
+     */
+    List<List<List<Pair<K,V>>>> run(Stream<AJob<K,V>> stream) {
+        jobs = stream.collect(Collectors.toList());
+        results = new ArrayList<>(jobs.size());
+        for (int i = 0; i < jobs.size(); i++) {
+            results.add(null);
+            pending.add(i);
+        }
+        remaining = jobs.size();
+        if (remaining == 0) {
+            return results;
+        }
+
+        List<Process> processes = new ArrayList<>();
+        List<Thread> handlers = new ArrayList<>();
+        try (ServerSocket server = new ServerSocket(
+                0, workers, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout(CONNECT_TIMEOUT);
+            for (int i = 0; i < workers; i++) {
+                processes.add(launch(server.getLocalPort()));
+            }
+            for (int i = 0; i < workers; i++) {
+                Socket socket = server.accept();
+                Thread t = new Thread(() -> serve(socket), "cluster-handler");
+                t.setDaemon(true);
+                t.start();
+                handlers.add(t);
+            }
+            for (Thread t : handlers) {
+                t.join();
+            }
+        } catch (SocketTimeoutException e) {
+            throw new RuntimeException("Workers did not connect!", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while computing jobs!", e);
+        } finally {
+            synchronized (this) {
+                remaining = 0;
+            }
+            for (Process p : processes) {
+                p.destroy();
+            }
+        }
+
+        synchronized (this) {
+            if (failure != null) {
+                throw failure;
+            }
+            if (results.contains(null)) {
+                throw new RuntimeException("All workers died!");
+            }
+            return results;
+        }
+    }
+
+    /**
+     * Starts a worker process, with the class path of this one.
+     *
+     * @param port The port of the coordinator
+     * @return The process
+     */
+    private Process launch(int port) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java")
+            .toString());
+        command.addAll(jvm_options);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ClusterWorker.class.getName());
+        command.add(InetAddress.getLoopbackAddress().getHostAddress());
+        command.add(String.valueOf(port));
+        return new ProcessBuilder(command)
+            .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+            .redirectError(ProcessBuilder.Redirect.INHERIT)
+            .start();
+    }
+
+    /**
+     * Serves a worker until all jobs are done or the worker dies.
+     *
+     * @param socket The connection with the worker
+     */
+    @SuppressWarnings("unchecked")
+    private void serve(Socket socket) {
+        Integer id = null;
+        try (socket) {
+            ObjectOutputStream out = new ObjectOutputStream(
+                new BufferedOutputStream(socket.getOutputStream()));
+            out.flush();
+            ObjectInputStream in = new ObjectInputStream(
+                new BufferedInputStream(socket.getInputStream()));
+            while ((id = next()) != null) {
+                out.writeObject(new ClusterWorker.Task<>(
+                    id, jobs.get(id), partitions, combiner));
+                out.reset();
+                out.flush();
+                done((ClusterWorker.Result<K,V>) in.readObject());
+                id = null;
+            }
+        } catch (NotSerializableException e) {
+            fail(new RuntimeException(
+                "Jobs must be serializable to run on a cluster!", e));
+        } catch (IOException | ClassNotFoundException e) {
+            /* The worker died: another one runs its job */
+            Logger.getLogger(Cluster.class.getName())
+                .log(Level.WARNING, "Lost a cluster worker", e);
+            if (id != null) {
+                pending.add(id);
+            }
+        }
+    }
+
+    /**
+     * Takes the next job to run.
+     *
+     * @return The id of the job, or null if the run is over
+     */
+    private Integer next() {
+        try {
+            while (true) {
+                synchronized (this) {
+                    if (remaining == 0 || failure != null) {
+                        return null;
+                    }
+                }
+                Integer id = pending.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (id != null) {
+                    return id;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private synchronized void done(ClusterWorker.Result<K,V> result) {
+        if (result.failure != null) {
+            fail(new RuntimeException("Job failed!", result.failure));
+        } else if (results.get(result.id) == null) {
+            results.set(result.id, result.partitions);
+            remaining--;
+        }
+    }
+
+    private synchronized void fail(RuntimeException e) {
+        if (failure == null) {
+            failure = e;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+* ClusterWorker
+*
+* @description: Worker process of the cluster mode: runs the jobs shipped by
+*               the coordinator and sends back their combined, partitioned
+*               output.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BinaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+public class ClusterWorker {
+
+    /**
+     * A job to run, with what is needed to combine and partition its output.
+     */
+    static class Task<K,V> implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final int id;
+        final AJob<K,V> job;
+        final int partitions;
+
+        /* The combiner of the strategy, null if it is not serializable */
+        final BinaryOperator<V> combiner;
+
+        Task(int id, AJob<K,V> job, int partitions,
+                BinaryOperator<V> combiner) {
+            this.id = id;
+            this.job = job;
+            this.partitions = partitions;
+            this.combiner = combiner;
+        }
+
+        /**
+         * Runs the job, as 'shuffle' does on its map side.
+         *
+         * @return The list of pairs of each partition
+         */
+        List<List<Pair<K,V>>> run() {
+            List<List<Pair<K,V>>> buckets = new ArrayList<>(partitions);
+            for (int i = 0; i < partitions; i++) {
+                buckets.add(new ArrayList<>());
+            }
+            try (Stream<Pair<K,V>> pairs = job.execute()) {
+                if (combiner == null) {
+                    pairs.forEach(x -> buckets
+                        .get(JobSchedulerContext.partitionOf(
+                            x.getKey(), partitions))
+                        .add(x));
+                } else {
+                    Map<K,V> combined = pairs.collect(Collectors.toMap(
+                        Pair::getKey, Pair::getValue, combiner));
+                    combined.forEach((k, v) -> buckets
+                        .get(JobSchedulerContext.partitionOf(k, partitions))
+                        .add(new Pair<>(k, v)));
+                }
+            }
+            return buckets;
+        }
+    }
+
+    /**
+     * The outcome of a task: the output of the job, or the exception it
+     * threw.
+     */
+    static class Result<K,V> implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final int id;
+        final List<List<Pair<K,V>>> partitions;
+        final RuntimeException failure;
+
+        Result(int id, List<List<Pair<K,V>>> partitions,
+                RuntimeException failure) {
+            this.id = id;
+            this.partitions = partitions;
+            this.failure = failure;
+        }
+    }
+
+    /**
+     * Connects to the coordinator and runs tasks until it closes the
+     * connection.
+     *
+     * @param args The host and the port of the coordinator
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: ClusterWorker <host> <port>");
+            System.exit(2);
+        }
+        try (Socket socket = new Socket(args[0], Integer.parseInt(args[1]))) {
+            ObjectOutputStream out = new ObjectOutputStream(
+                new BufferedOutputStream(socket.getOutputStream()));
+            out.flush();
+            ObjectInputStream in = new ObjectInputStream(
+                new BufferedInputStream(socket.getInputStream()));
+            while (true) {
+                Task<?,?> task;
+                try {
+                    task = (Task<?,?>) in.readObject();
+                } catch (EOFException e) {
+                    return;
+                } catch (ClassNotFoundException e) {
+                    throw new IOException("Unknown job class!", e);
+                }
+                out.writeObject(run(task));
+                /* Tasks are independent, no back-references needed */
+                out.reset();
+                out.flush();
+            }
+        }
+    }
+
+    private static <K,V> Result<K,V> run(Task<K,V> task) {
+        try {
+            return new Result<>(task.id, task.run(), null);
+        } catch (RuntimeException e) {
+            return new Result<>(task.id, null, e);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+* Codec
+*
+* @description: Binary encoding of keys or values, used to store them
+*               outside of the Java heap.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+
+public interface Codec<T> {
+
+    /**
+     * Encodes an object. Equal objects must have the same encoding, and
+     * different objects different encodings.
+     *
+     * @param value The object to encode
+     * @return The bytes of the object
+     */
+    byte[] encode(T value);
+
+    /**
+     * Decodes an object.
+     *
+     * @param bytes The bytes of the object, from the position to the limit
+     * @return The object
+     */
+    T decode(ByteBuffer bytes);
+
+    /**
+     * Hashes an object to 64 bits, from its encoding, so that objects with
+     * the same 'hashCode' still get different hashes.
+     *
+     * @param value The object to hash
+     * @return The hash
+     */
+    default long hash(T value) {
+        return Hashing.hash(encode(value));
+    }
+
+    static Codec<Integer> ofInteger() {
+        return new Codec<Integer>() {
+            @Override
+            public byte[] encode(Integer value) {
+                return ByteBuffer.allocate(Integer.BYTES).putInt(value)
+                    .array();
+            }
+
+            @Override
+            public Integer decode(ByteBuffer bytes) {
+                return bytes.getInt(bytes.position());
+            }
+
+            @Override
+            public long hash(Integer value) {
+                return Hashing.mix(value);
+            }
+        };
+    }
+
+    static Codec<Long> ofLong() {
+        return new Codec<Long>() {
+            @Override
+            public byte[] encode(Long value) {
+                return ByteBuffer.allocate(Long.BYTES).putLong(value).array();
+            }
+
+            @Override
+            public Long decode(ByteBuffer bytes) {
+                return bytes.getLong(bytes.position());
+            }
+
+            @Override
+            public long hash(Long value) {
+                return Hashing.mix(value);
+            }
+        };
+    }
+
+    static Codec<String> ofString() {
+        return new Codec<String>() {
+            @Override
+            public byte[] encode(String value) {
+                return value.getBytes(StandardCharsets.UTF_8);
+            }
+
+            @Override
+            public String decode(ByteBuffer bytes) {
+                return StandardCharsets.UTF_8.decode(bytes).toString();
+            }
+        };
+    }
+}
@@ -0,0 +1,165 @@
+/*
+* CountMinSketch
+*
+* @description: Fixed-size sketch estimating the counts of the elements of a
+*               stream, never below the true counts.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+
+public final class CountMinSketch {
+
+    /* Largest number of counters in a row */
+    private static final int MAX_WIDTH = 1 << 26;
+
+    /* Rows of counters, each one indexed by its own hash of the element */
+    private final int depth;
+    private final int width;
+    private final long[] counters;
+
+    /* Sum of all the counts added */
+    private long total = 0;
+
+    /**
+     * Constructor. With probability at least 1 - delta, an estimate
+     * exceeds the true count by at most epsilon times the total count.
+     *
+     * @param epsilon The error, relative to the total count
+     * @param delta The probability of exceeding the error
+     */
+    public CountMinSketch(double epsilon, double delta) {
+        checkBounds(epsilon, delta);
+        /* e / epsilon counters per row, rounded up to a power of two */
+        int w = (int) Math.ceil(Math.E / epsilon);
+        this.width = Integer.highestOneBit(w - 1) << 1;
+        this.depth = (int) Math.ceil(Math.log(1 / delta));
+        this.counters = new long[depth * width];
+    }
+
+    /**
+     * Checks the error bounds of a sketch, without allocating it.
+     *
+     * @param epsilon The error, relative to the total count
+     * @param delta The probability of exceeding the error
+     */
+    public static void checkBounds(double epsilon, double delta) {
+        if (!(epsilon > 0 && epsilon < 1 && delta > 0 && delta < 1)) {
+            throw new RuntimeException("Error bounds must be in (0, 1)!");
+        }
+        if (Math.E / epsilon > MAX_WIDTH) {
+            throw new RuntimeException("Sketch too large!");
+        }
+    }
+
+    /**
+     * Adds a count to an element.
+     *
+     * @param hash The 64-bit hash of the element, well mixed
+     * @param count The count to add, not negative
+     * @return The new estimate of the count of the element
+     */
+    public long add(long hash, long count) {
+        total += count;
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int i = index(hash, row);
+            counters[i] += count;
+            estimate = Math.min(estimate, counters[i]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Estimates the count of an element: the smallest of its counters.
+     *
+     * @param hash The 64-bit hash of the element, well mixed
+     * @return The estimate, at least the true count
+     */
+    public long estimate(long hash) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters[index(hash, row)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Adds the counts of another sketch of the same size.
+     *
+     * @param other The other sketch
+     */
+    public void merge(CountMinSketch other) {
+        if (other.depth != depth || other.width != width) {
+            throw new RuntimeException("Sketches of different size!");
+        }
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] += other.counters[i];
+        }
+        total += other.total;
+    }
+
+    /**
+     * Gets the counter of an element in a row, by double hashing.
+     *
+     * @param hash The 64-bit hash of the element
+     * @param row The row
+     * @return The index of the counter, between 0 and depth * width - 1
+     */
+    private int index(long hash, int row) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return row * width + ((h1 + row * h2) & (width - 1));
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Gets the actual relative error, which is at most the requested one
+     * as the width is rounded up.
+     *
+     * @return e / width
+     */
+    public double getEpsilon() {
+        return Math.E / width;
+    }
+
+    /**
+     * Gets the actual probability of exceeding the error.
+     *
+     * @return e^-depth
+     */
+    public double getDelta() {
+        return Math.exp(-depth);
+    }
+
+    /**
+     * Gets the bound on the overestimate of any count.
+     *
+     * @return epsilon times the total count
+     */
+    public long getError() {
+        return (long) Math.ceil(getEpsilon() * total);
+    }
+
+    /**
+     * Gets the memory used by the counters.
+     *
+     * @return The size in bytes
+     */
+    public long bytes() {
+        return (long) counters.length * Long.BYTES;
+    }
+}
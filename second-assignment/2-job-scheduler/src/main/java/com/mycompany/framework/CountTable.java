@@ -0,0 +1,250 @@
+/*
+* CountTable
+*
+* @description: Open-addressing hash table summing primitive long counts by
+*               key, with a separate table of primitive long keys for the
+*               keys that can be packed.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.LongFunction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+
+public final class CountTable<K> {
+
+    /* Initial capacity of the tables, a power of two */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /* Largest power of two an array can hold */
+    static final int MAX_CAPACITY = 1 << 30;
+
+    /* Multiplier of the Fibonacci hashing of the keys */
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    /* Packs the keys in longs, or null */
+    private final Counting.KeyPacker<K> packer;
+
+    /* Packed keys and their counts, linear probing; key 0 marks a free slot */
+    private long[] packed_keys = new long[INITIAL_CAPACITY];
+    private long[] packed_counts = new long[INITIAL_CAPACITY];
+    private int packed_size = 0;
+
+    /* The packed key 0, which cannot be stored in the table */
+    private boolean has_zero = false;
+    private long zero_count = 0;
+
+    /* Object keys and their counts, linear probing; null marks a free slot */
+    private Object[] keys = new Object[INITIAL_CAPACITY];
+    private long[] counts = new long[INITIAL_CAPACITY];
+    private int size = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param packer Packs the keys in longs, or null to store all of them
+     *               as objects
+     */
+    public CountTable(Counting.KeyPacker<K> packer) {
+        this.packer = packer;
+    }
+
+    /**
+     * Adds a count to a key.
+     *
+     * @param key The key
+     * @param count The count to add
+     */
+    public void add(K key, long count) {
+        if (packer != null && packer.canPack(key)) {
+            addPacked(packer.pack(key), count);
+            return;
+        }
+        int mask = keys.length - 1;
+        int i = slot(key.hashCode(), mask);
+        while (keys[i] != null) {
+            if (keys[i].equals(key)) {
+                counts[i] += count;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        counts[i] = count;
+        if (++size > maxSize(keys.length)) {
+            rehash();
+        }
+    }
+
+    /**
+     * Adds a count to a packed key.
+     *
+     * @param key The packed key
+     * @param count The count to add
+     */
+    public void addPacked(long key, long count) {
+        if (key == 0) {
+            has_zero = true;
+            zero_count += count;
+            return;
+        }
+        int mask = packed_keys.length - 1;
+        int i = slot(key, mask);
+        while (packed_keys[i] != 0) {
+            if (packed_keys[i] == key) {
+                packed_counts[i] += count;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        packed_keys[i] = key;
+        packed_counts[i] = count;
+        if (++packed_size > maxSize(packed_keys.length)) {
+            rehashPacked();
+        }
+    }
+
+    /**
+     * Adds all the counts of another table, which must use the same packer.
+     *
+     * @param other The table to add
+     */
+    @SuppressWarnings("unchecked")
+    public void addAll(CountTable<K> other) {
+        if (other.has_zero) {
+            addPacked(0, other.zero_count);
+        }
+        for (int i = 0; i < other.packed_keys.length; i++) {
+            if (other.packed_keys[i] != 0) {
+                addPacked(other.packed_keys[i], other.packed_counts[i]);
+            }
+        }
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.keys[i] != null) {
+                add((K) other.keys[i], other.counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of distinct keys.
+     *
+     * @return The number of keys
+     */
+    public int size() {
+        return size + packed_size + (has_zero ? 1 : 0);
+    }
+
+    /**
+     * Streams the counts as the groups of 'collect', each holding a single
+     * value. Packed keys are unpacked on the fly.
+     *
+     * @param value Converts a count to a value
+     * @return Groups of pairs with the same key
+     */
+    @SuppressWarnings("unchecked")
+    public <V> Stream<Pair<K, List<V>>> groups(LongFunction<V> value) {
+        Stream<Pair<K, List<V>>> zero = has_zero
+            ? Stream.of(group(packer.unpack(0), zero_count, value))
+            : Stream.empty();
+        Stream<Pair<K, List<V>>> packed = IntStream
+            .range(0, packed_keys.length)
+            .filter(i -> packed_keys[i] != 0)
+            .mapToObj(i -> group(packer.unpack(packed_keys[i]),
+                packed_counts[i], value));
+        Stream<Pair<K, List<V>>> objects = IntStream
+            .range(0, keys.length)
+            .filter(i -> keys[i] != null)
+            .mapToObj(i -> group((K) keys[i], counts[i], value));
+        return Stream.concat(zero, Stream.concat(packed, objects));
+    }
+
+    private static <K,V> Pair<K, List<V>> group(K key, long count,
+            LongFunction<V> value) {
+        return new Pair<>(key, Collections.singletonList(value.apply(count)));
+    }
+
+    /**
+     * Doubles the table of the object keys.
+     */
+    private void rehash() {
+        Object[] old_keys = keys;
+        long[] old_counts = counts;
+        keys = new Object[doubled(old_keys.length)];
+        counts = new long[keys.length];
+        int mask = keys.length - 1;
+        for (int j = 0; j < old_keys.length; j++) {
+            if (old_keys[j] != null) {
+                int i = slot(old_keys[j].hashCode(), mask);
+                while (keys[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = old_keys[j];
+                counts[i] = old_counts[j];
+            }
+        }
+    }
+
+    /**
+     * Doubles the table of the packed keys.
+     */
+    private void rehashPacked() {
+        long[] old_keys = packed_keys;
+        long[] old_counts = packed_counts;
+        packed_keys = new long[doubled(old_keys.length)];
+        packed_counts = new long[packed_keys.length];
+        int mask = packed_keys.length - 1;
+        for (int j = 0; j < old_keys.length; j++) {
+            if (old_keys[j] != 0) {
+                int i = slot(old_keys[j], mask);
+                while (packed_keys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                packed_keys[i] = old_keys[j];
+                packed_counts[i] = old_counts[j];
+            }
+        }
+    }
+
+    /**
+     * Doubles the capacity of a table, which would overflow past
+     * 'MAX_CAPACITY'.
+     *
+     * @param capacity The capacity of the table
+     * @return The new capacity
+     */
+    static int doubled(int capacity) {
+        if (capacity >= MAX_CAPACITY) {
+            throw new RuntimeException("Count table too large!");
+        }
+        return capacity * 2;
+    }
+
+    /**
+     * Maps a hash to the first slot to probe, spreading it with Fibonacci
+     * hashing so that keys differing only in their high bits do not cluster.
+     *
+     * @param hash The hash of the key
+     * @param mask The capacity of the table minus one
+     * @return The slot
+     */
+    private static int slot(long hash, int mask) {
+        return (int) ((hash * GOLDEN) >>> 32) & mask;
+    }
+
+    /**
+     * Keeps the tables at most 2/3 full, so that probe sequences are short.
+     *
+     * @param capacity The capacity of a table
+     * @return The maximum number of keys before doubling it
+     */
+    private static int maxSize(int capacity) {
+        return capacity / 3 * 2;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+* Counting
+*
+* @description: Opt-in description of a count-style aggregation, where the
+*               values of a key are summed as primitive longs in a
+*               CountTable instead of being grouped in a map of lists.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import java.util.function.LongFunction;
+import java.util.function.ToLongFunction;
+
+
+public class Counting<K,V> {
+
+    /**
+     * Packs some of the keys in a long, so that the CountTable can store
+     * them without any object. Packing must be injective, and
+     * 'unpack(pack(k))' must be equal to 'k'.
+     */
+    public interface KeyPacker<K> {
+        boolean canPack(K key);
+
+        long pack(K key);
+
+        K unpack(long packed);
+    }
+
+    /* Converts a value to the count it adds */
+    private final ToLongFunction<V> count;
+
+    /* Converts a summed count back to a value */
+    private final LongFunction<V> value;
+
+    /* Packs the keys in longs, or null to store all of them as objects */
+    private final KeyPacker<K> packer;
+
+    /**
+     * Constructor.
+     *
+     * @param count Converts a value to the count it adds
+     * @param value Converts a summed count back to a value
+     * @param packer Packs the keys in longs, or null
+     */
+    public Counting(ToLongFunction<V> count, LongFunction<V> value,
+            KeyPacker<K> packer) {
+        this.count = count;
+        this.value = value;
+        this.packer = packer;
+    }
+
+    public ToLongFunction<V> getCount() {
+        return count;
+    }
+
+    public LongFunction<V> getValue() {
+        return value;
+    }
+
+    public KeyPacker<K> getPacker() {
+        return packer;
+    }
+}
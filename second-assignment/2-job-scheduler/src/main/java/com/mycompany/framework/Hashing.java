@@ -0,0 +1,68 @@
+/*
+* Hashing
+*
+* @description: 64-bit hash functions for the sketches, whose accuracy
+*               depends on hashes with no more collisions than random ones.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+
+public final class Hashing {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private Hashing() {
+    }
+
+    /**
+     * Hashes bytes with the 64-bit half of MurmurHash3_x64_128.
+     *
+     * @param bytes The bytes to hash
+     * @return The hash
+     */
+    public static long hash(byte[] bytes) {
+        int n = bytes.length;
+        long h = n;
+        int i = 0;
+        for (; i + Long.BYTES <= n; i += Long.BYTES) {
+            long k = 0;
+            for (int j = Long.BYTES - 1; j >= 0; j--) {
+                k = (k << 8) | (bytes[i + j] & 0xff);
+            }
+            h ^= mixBlock(k);
+            h = Long.rotateLeft(h, 27) * 5 + 0x52dce729;
+        }
+        long k = 0;
+        for (int j = n - 1; j >= i; j--) {
+            k = (k << 8) | (bytes[j] & 0xff);
+        }
+        h ^= mixBlock(k);
+        return mix(h);
+    }
+
+    /**
+     * Mixes the bits of a long, with the finalizer of MurmurHash3: a
+     * bijection, so distinct longs (e.g. packed keys) never collide.
+     *
+     * @param h The long
+     * @return The hash
+     */
+    public static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static long mixBlock(long k) {
+        k *= C1;
+        k = Long.rotateLeft(k, 31);
+        return k * C2;
+    }
+}
@@ -0,0 +1,165 @@
+/*
+* HyperLogLog
+*
+* @description: Fixed-size sketch estimating the number of distinct elements
+*               of a stream.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+
+public final class HyperLogLog {
+
+    /* Number of registers, as a power of two */
+    private final int precision;
+
+    /* Per register, the largest rank of the hashes falling into it */
+    private final byte[] registers;
+
+    /**
+     * Constructor.
+     *
+     * @param precision The registers are 2^precision bytes, and the
+     *                  relative standard error is 1.04 / sqrt(2^precision)
+     */
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new RuntimeException("Precision must be in [4, 18]!");
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * Adds an element.
+     *
+     * @param hash The 64-bit hash of the element, well mixed
+     */
+    public void add(long hash) {
+        add(registers, 0, precision, hash);
+    }
+
+    /**
+     * Estimates the number of distinct elements added to this sketch or to
+     * the merged ones.
+     *
+     * @return The estimate
+     */
+    public long estimate() {
+        return estimate(registers, 0, precision);
+    }
+
+    /**
+     * Adds the elements of another sketch of the same precision.
+     *
+     * @param other The other sketch
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new RuntimeException("Sketches of different precision!");
+        }
+        merge(registers, other.registers);
+    }
+
+    /**
+     * Gets the relative standard error of the estimates.
+     *
+     * @return The standard error, e.g. 0.01 for 1%
+     */
+    public double getStandardError() {
+        return standardError(precision);
+    }
+
+    /**
+     * Gets the memory used by the registers.
+     *
+     * @return The size in bytes
+     */
+    public long bytes() {
+        return registers.length;
+    }
+
+    /**
+     * Adds an element to a sketch stored at an offset of an array, so that
+     * many small sketches can share a single array.
+     *
+     * @param registers The array
+     * @param offset The first register of the sketch
+     * @param precision The precision of the sketch
+     * @param hash The 64-bit hash of the element, well mixed
+     */
+    static void add(byte[] registers, int offset, int precision, long hash) {
+        int i = offset + (int) (hash >>> (Long.SIZE - precision));
+        /* Position of the first 1 in the rest of the hash, at most 64 - p */
+        int rank = Long.numberOfLeadingZeros(
+            (hash << precision) | (1L << (precision - 1))) + 1;
+        if (rank > registers[i]) {
+            registers[i] = (byte) rank;
+        }
+    }
+
+    /**
+     * Estimates the cardinality of a sketch stored at an offset of an
+     * array, with the linear counting correction for the small ones.
+     *
+     * @param registers The array
+     * @param offset The first register of the sketch
+     * @param precision The precision of the sketch
+     * @return The estimate
+     */
+    static long estimate(byte[] registers, int offset, int precision) {
+        int m = 1 << precision;
+        double sum = 0;
+        int zeros = 0;
+        for (int i = offset; i < offset + m; i++) {
+            sum += Math.scalb(1.0, -registers[i]);
+            if (registers[i] == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Merges sketches register by register.
+     *
+     * @param registers The registers to update
+     * @param other The registers to add, of the same length
+     */
+    static void merge(byte[] registers, byte[] other) {
+        for (int i = 0; i < registers.length; i++) {
+            if (other[i] > registers[i]) {
+                registers[i] = other[i];
+            }
+        }
+    }
+
+    static double standardError(int precision) {
+        return 1.04 / Math.sqrt(1 << precision);
+    }
+
+    /**
+     * Bias correction constant of the harmonic mean.
+     *
+     * @param m The number of registers
+     * @return The constant
+     */
+    private static double alpha(int m) {
+        switch (m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+* JobEvent
+*
+* @description: Flight Recorder event for the execution of a job.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+
+@Name("com.mycompany.framework.Job")
+@Label("Job")
+@Category("Job Scheduler")
+@Description("Execution of a job, from 'execute' to its combined output")
+class JobEvent extends Event {
+
+    @Label("Job")
+    String job;
+
+    @Label("Records")
+    @Description("Pairs emitted by the job, before combining them")
+    long records;
+
+    @Label("Bytes Read")
+    @DataAmount
+    long bytes;
+}
@@ -8,15 +8,91 @@
 
 package com.mycompany.framework;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
-public class JobSchedulerContext<K,V> {
+public class JobSchedulerContext<K,V> implements AutoCloseable {
     
     /* The strategy (scheduling) to use */
-    private JobSchedulerStrategy strat;
+    private JobSchedulerStrategy<K,V> strat;
+    
+    /* The executor running the jobs, null for sequential execution */
+    private ExecutorService executor;
+    
+    /* Whether the executor was created by the context, which shuts it down
+       when it is replaced or closed */
+    private boolean owns_executor = false;
+    
+    /* The number of partitions of the shuffle, 0 to match the executor */
+    private int partitions;
+    
+    /* Records kept in memory by 'collect' before spilling, 0 for no limit */
+    private long spillThreshold;
+    
+    /* Whether 'shuffle' spreads the hot keys over several partitions */
+    private boolean skew_splitting;
+    
+    /* The groups kept by the output stage (0 for all) and whether the
+       output is sorted; see 'outputStage' */
+    private int top_k;
+    private boolean sorted_output;
+    
+    /* Worker processes of the cluster mode and their JVM options */
+    private int cluster_workers;
+    private List<String> cluster_options = Collections.emptyList();
+    
+    /* The codecs of the off-heap grouping, null if it is disabled */
+    private Codec<K> key_codec;
+    private Codec<V> value_codec;
+    private int arena_size;
+    
+    /* Batch size and queue capacity of the pipelined mode, 0 if disabled */
+    private int batch_size;
+    private int queue_capacity;
+    
+    /* Capacity of the batches of the columnar mode, 0 if disabled */
+    private int batch_capacity;
+    
+    /* Keys reported by the approximate mode (0 if it is disabled) and the
+       error bounds of its counts; see 'approximate' */
+    private int heavy_keys;
+    private double epsilon;
+    private double delta;
+    
+    /* Hash the keys and values into the sketches, to 64 bits; see
+       'setApproximate' */
+    private ToLongFunction<K> sketch_key_hash;
+    private ToLongFunction<V> sketch_value_hash;
+    
+    /* Whether runs are timed and traced with Flight Recorder events */
+    private boolean instrumented;
+    
+    /* The statistics of the instrumented run in progress, null otherwise:
+       the phases and the jobs are timed only while it is set */
+    private volatile RunStats stats;
+    
+    /* The statistics of the last instrumented run */
+    private RunStats last_stats;
     
     /**
      * Constructor.
@@ -28,13 +104,72 @@ public class JobSchedulerContext<K,V> {
     }
     
     /**
-     * Entry point of the framework.
+     * Entry point of the framework. If an executor is set, 'compute' and
+     * 'collect' are replaced by the partitioned 'shuffle'. In cluster,
+     * pipelined and columnar mode they are replaced by 'cluster', 'pipeline'
+     * and 'collectBatches'. In approximate mode the jobs are summarized by
+     * 'approximate' instead, and the summary passed to 'outputApproximate'.
+     * These modes exclude each other, and the setters reject a second one.
+     * The groups are closed after 'output', deleting the runs spilled by
+     * the grouping even if 'output' did not read all of them.
      */
     public void run() {
         if (strat == null) {
             throw new RuntimeException("Strategy is null!");
         }
-        strat.output(collect(compute(strat.emit())));
+        if (heavy_keys > 0) {
+            strat.outputApproximate(approximate(strat.emit()));
+            return;
+        }
+        if (instrumented) {
+            runInstrumented();
+            return;
+        }
+        Stream<Pair<K, List<V>>> groups;
+        if (cluster_workers > 0) {
+            groups = cluster(strat.emit());
+        } else if (batch_size > 0) {
+            groups = arrange(pipeline(strat.emit()));
+        } else if (batch_capacity > 0) {
+            groups = arrange(collectBatches(strat.emit()));
+        } else if (executor == null) {
+            groups = arrange(collect(compute(strat.emit())));
+        } else {
+            groups = shuffle(strat.emit());
+        }
+        try (groups) {
+            strat.output(groups);
+        }
+    }
+    
+    /**
+     * Same as 'run', but timing each phase and each job. Every job is
+     * drained as soon as it is computed, even in sequential mode, so that
+     * its execution time is not mixed with the one of 'collect'.
+     */
+    private void runInstrumented() {
+        RunStats current = new RunStats();
+        stats = current;
+        try {
+            long begin = System.nanoTime();
+            Stream<AJob<K,V>> jobs = current.timeEmit(strat.emit());
+            Stream<Pair<K, List<V>>> groups = executor == null
+                ? arrange(collect(jobs.flatMap(x -> drain(x).stream())))
+                : shuffle(jobs);
+            long collected = System.nanoTime();
+            /* With an output stage, the keys are counted before it */
+            if (top_k == 0 && !sorted_output) {
+                groups = groups.peek(x -> current.addKey());
+            }
+            try (Stream<Pair<K, List<V>>> output = groups) {
+                strat.output(output);
+            }
+            current.finish(begin, collected, System.nanoTime(),
+                executor != null);
+            last_stats = current;
+        } finally {
+            stats = null;
+        }
     }
     
     /**
@@ -46,9 +181,442 @@ public class JobSchedulerContext<K,V> {
         this.strat = strat;
     }
     
+    /**
+     * Getter method for the strategy.
+     * 
+     * @return The strategy
+     */
+    JobSchedulerStrategy<K,V> getScheduling() {
+        return strat;
+    }
+    
+    /**
+     * Setter method for the executor used by 'compute'. The executor is not
+     * shut down by the framework.
+     * 
+     * @param executor The executor to set, null for sequential execution
+     */
+    public void setExecutor(ExecutorService executor) {
+        checkExecutor(executor != null);
+        replaceExecutor(executor, false);
+    }
+    
+    /**
+     * Sets the number of jobs executed at the same time, backed by a
+     * ForkJoinPool of the given size, which is shut down by 'close'.
+     * 
+     * @param parallelism The number of worker threads, 1 for sequential
+     *                    execution
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new RuntimeException("Parallelism must be positive!");
+        }
+        checkExecutor(parallelism > 1);
+        replaceExecutor(
+            parallelism > 1 ? new ForkJoinPool(parallelism) : null, true);
+    }
+    
+    /**
+     * Runs each job on its own virtual thread (Java 21+), which suits jobs
+     * blocking on I/O: waiting jobs do not hold a platform thread, so many
+     * more of them can be in flight than there are cores. On an older Java
+     * it throws, leaving the executor as it was.
+     * 
+     * @param max_concurrency The maximum number of jobs running at once
+     */
+    public void setVirtualThreads(int max_concurrency) {
+        replaceExecutor(new VirtualThreadExecutor(max_concurrency), true);
+    }
+    
+    /**
+     * Sets the executor, shutting down the previous one if the context
+     * created it.
+     * 
+     * @param executor The executor to set, null for sequential execution
+     * @param owned True if the executor was created by the context
+     */
+    private void replaceExecutor(ExecutorService executor, boolean owned) {
+        if (owns_executor && this.executor != executor) {
+            this.executor.shutdown();
+        }
+        this.executor = executor;
+        this.owns_executor = owned && executor != null;
+    }
+    
+    /**
+     * Shuts down the executor created by 'setParallelism' or
+     * 'setVirtualThreads', if any; the jobs then run sequentially. An
+     * executor set with 'setExecutor' is left to its owner.
+     */
+    @Override
+    public void close() {
+        replaceExecutor(null, false);
+    }
+    
+    /**
+     * Enables the pipelined mode: jobs and aggregation run at the same time
+     * and exchange batches of pairs through bounded queues, see 'pipeline'.
+     * 
+     * @param batch_size The number of pairs in a batch, 0 to disable the
+     *                   pipelined mode
+     * @param queue_capacity The number of batches each aggregator can lag
+     *                       behind before the jobs are blocked
+     */
+    public void setPipelined(int batch_size, int queue_capacity) {
+        if (batch_size < 0 || (batch_size > 0 && queue_capacity < 1)) {
+            throw new RuntimeException("Invalid pipeline configuration!");
+        }
+        if (batch_size > 0) {
+            checkExclusive("Pipelined");
+        }
+        this.batch_size = batch_size;
+        this.queue_capacity = queue_capacity;
+    }
+    
+    /**
+     * Enables the columnar mode: jobs are run through 'executeBatch' and
+     * their batches are folded by 'collectBatches', without a Pair per
+     * record.
+     * 
+     * @param batch_capacity The number of pairs in a batch, 0 to disable
+     *                       the columnar mode
+     */
+    public void setBatched(int batch_capacity) {
+        if (batch_capacity < 0) {
+            throw new RuntimeException("Batch capacity must not be negative!");
+        }
+        if (batch_capacity > 0) {
+            checkExclusive("Columnar");
+        }
+        this.batch_capacity = batch_capacity;
+    }
+    
+    /**
+     * Enables the approximate mode: the output of the jobs is summarized in
+     * one pass by sketches of fixed size, see 'approximate', instead of
+     * being grouped. The counts of the values are given by the counting of
+     * the strategy if any, otherwise every pair counts as 1.
+     * Keys and values are hashed from their 32-bit hashCode, so keys with
+     * the same hashCode are counted as one; see the overload with codecs.
+     * 
+     * @param heavy_keys The number of keys reported with their counts, 0
+     *                   to disable the approximate mode
+     * @param epsilon The error of the counts, relative to the total count
+     * @param delta The probability of exceeding the error of a count
+     */
+    public void setApproximate(int heavy_keys, double epsilon,
+            double delta) {
+        setApproximate(heavy_keys, epsilon, delta,
+            x -> Hashing.mix(x.hashCode()), x -> Hashing.mix(x.hashCode()));
+    }
+    
+    /**
+     * Enables the approximate mode, hashing the keys and values into the
+     * sketches with the 64-bit hashes of their codecs: keys collide with
+     * the probability of random hashes, whatever their hashCode.
+     * 
+     * @param heavy_keys The number of keys reported with their counts, 0
+     *                   to disable the approximate mode
+     * @param epsilon The error of the counts, relative to the total count
+     * @param delta The probability of exceeding the error of a count
+     * @param key_codec The codec hashing the keys
+     * @param value_codec The codec hashing the values
+     */
+    public void setApproximate(int heavy_keys, double epsilon,
+            double delta, Codec<K> key_codec, Codec<V> value_codec) {
+        setApproximate(heavy_keys, epsilon, delta, key_codec::hash,
+            value_codec::hash);
+    }
+    
+    private void setApproximate(int heavy_keys, double epsilon,
+            double delta, ToLongFunction<K> key_hash,
+            ToLongFunction<V> value_hash) {
+        if (heavy_keys < 0) {
+            throw new RuntimeException("Heavy keys must not be negative!");
+        }
+        if (heavy_keys > 0) {
+            /* Checking the bounds before running the jobs */
+            CountMinSketch.checkBounds(epsilon, delta);
+            checkExclusive("Approximate");
+        }
+        this.heavy_keys = heavy_keys;
+        this.epsilon = epsilon;
+        this.delta = delta;
+        this.sketch_key_hash = key_hash;
+        this.sketch_value_hash = value_hash;
+    }
+    
+    /**
+     * Enables the instrumentation of the runs: the time spent in each phase,
+     * the jobs and the records are summed up in a RunStats, and reported
+     * as Flight Recorder events ('com.mycompany.framework.Phase' and
+     * 'com.mycompany.framework.Job'). Only sequential and 'shuffle' runs
+     * are instrumented, so it cannot be combined with the cluster,
+     * pipelined, columnar or approximate mode.
+     * 
+     * @param instrumented True to instrument the runs
+     */
+    public void setInstrumented(boolean instrumented) {
+        if (instrumented) {
+            checkExclusive("Instrumented");
+        }
+        this.instrumented = instrumented;
+    }
+    
+    /**
+     * Getter method for the statistics of the last instrumented run.
+     * 
+     * @return The statistics, or null if no instrumented run completed
+     */
+    public RunStats getStats() {
+        return last_stats;
+    }
+    
+    /**
+     * Rejects a mode of execution when another one is already enabled, as
+     * 'run' would silently pick only one of them, or when a setting it
+     * ignores is enabled. Instrumentation covers only 'collect' and
+     * 'shuffle', so it is a mode too.
+     * 
+     * @param mode The mode being enabled, as named in the error message
+     */
+    private void checkExclusive(String mode) {
+        List<String> enabled = enabledModes();
+        enabled.remove(mode);
+        if (!enabled.isEmpty()) {
+            throw new RuntimeException(mode + " mode conflicts with "
+                + String.join(", ", enabled) + " mode!");
+        }
+        List<String> settings = new ArrayList<>();
+        if (spillThreshold > 0) {
+            settings.add("Spill threshold");
+        }
+        if (key_codec != null) {
+            settings.add("Off-heap grouping");
+        }
+        if (skew_splitting) {
+            settings.add("Skew splitting");
+        }
+        if (top_k > 0) {
+            settings.add("Top K");
+        }
+        if (sorted_output) {
+            settings.add("Sorted output");
+        }
+        for (String setting : settings) {
+            checkSetting(setting, List.of(mode));
+        }
+    }
+    
+    /**
+     * Rejects a setting that an enabled mode would silently ignore: the
+     * modes that do not group through 'collect' or 'shuffle' ignore the
+     * spill threshold and the off-heap grouping, only 'shuffle' splits the
+     * hot keys, and the approximate output is neither sorted nor limited.
+     * 
+     * @param setting The setting being enabled, as named in the error
+     *                message
+     * @param modes The enabled modes
+     */
+    private static void checkSetting(String setting, List<String> modes) {
+        for (String mode : modes) {
+            boolean ignored;
+            switch (setting) {
+                case "Spill threshold":
+                case "Off-heap grouping":
+                    ignored = List.of("Pipelined", "Columnar", "Approximate")
+                        .contains(mode);
+                    break;
+                case "Skew splitting":
+                    ignored = !mode.equals("Instrumented");
+                    break;
+                default:
+                    ignored = mode.equals("Approximate");
+            }
+            if (ignored) {
+                throw new RuntimeException(setting + " is ignored in "
+                    + mode + " mode!");
+            }
+        }
+    }
+    
+    /**
+     * Rejects an executor change that would leave the hot keys unsplit,
+     * as they are split by the partitioned 'shuffle' only.
+     * 
+     * @param parallel True if the new executor is not null
+     */
+    private void checkExecutor(boolean parallel) {
+        if (!parallel && skew_splitting) {
+            throw new RuntimeException("Skew splitting needs an executor!");
+        }
+    }
+    
+    /**
+     * Lists the enabled modes of execution.
+     * 
+     * @return The names of the modes, as in the error messages
+     */
+    private List<String> enabledModes() {
+        List<String> enabled = new ArrayList<>();
+        if (cluster_workers > 0) {
+            enabled.add("Cluster");
+        }
+        if (batch_size > 0) {
+            enabled.add("Pipelined");
+        }
+        if (batch_capacity > 0) {
+            enabled.add("Columnar");
+        }
+        if (heavy_keys > 0) {
+            enabled.add("Approximate");
+        }
+        if (instrumented) {
+            enabled.add("Instrumented");
+        }
+        return enabled;
+    }
+    
+    /**
+     * Sets the number of partitions the keys are hashed into by 'shuffle'.
+     * 
+     * @param partitions The number of partitions, 0 to use the parallelism
+     *                   of the executor
+     */
+    public void setPartitions(int partitions) {
+        if (partitions < 0) {
+            throw new RuntimeException("Partitions must not be negative!");
+        }
+        this.partitions = partitions;
+    }
+    
+    /**
+     * Sets the memory budget of 'collect', as the number of records (values,
+     * or keys when the strategy has a reducer) kept in memory. When it is
+     * reached, the records are sorted and spilled to a temporary file, and
+     * the spilled runs are merged back when the groups are streamed. Keys
+     * and values must then be serializable. The pipelined, columnar and
+     * approximate modes do not spill, so they reject it.
+     * 
+     * @param spillThreshold The number of records, 0 to never spill
+     */
+    public void setSpillThreshold(long spillThreshold) {
+        if (spillThreshold < 0) {
+            throw new RuntimeException("Spill threshold must not be negative!");
+        }
+        if (spillThreshold > 0) {
+            checkSetting("Spill threshold", enabledModes());
+        }
+        this.spillThreshold = spillThreshold;
+    }
+    
+    /**
+     * Passes only the first K groups, by the ranking of the strategy, to
+     * 'output', sorted. A bounded heap selects them in each partition
+     * concurrently, so the other groups are never sorted nor written.
+     * The approximate mode rejects it.
+     * 
+     * @param top_k The number of groups to keep, 0 to keep all of them
+     */
+    public void setTopK(int top_k) {
+        if (top_k < 0) {
+            throw new RuntimeException("Top K must not be negative!");
+        }
+        if (top_k > 0) {
+            checkSetting("Top K", enabledModes());
+        }
+        this.top_k = top_k;
+    }
+    
+    /**
+     * Sorts the groups passed to 'output' by the ranking of the strategy.
+     * The partitions are sorted concurrently and merged. The approximate
+     * mode rejects it.
+     * 
+     * @param sorted_output True to sort the output
+     */
+    public void setSortedOutput(boolean sorted_output) {
+        if (sorted_output) {
+            checkSetting("Sorted output", enabledModes());
+        }
+        this.sorted_output = sorted_output;
+    }
+    
+    /**
+     * Enables the splitting of the hot keys in 'shuffle': the output of the
+     * jobs is sampled, and the keys holding a large part of the fair share
+     * of a partition are spread over several partitions, so that the
+     * partitions stay balanced when a few keys dominate the input. Needs an
+     * executor, and rejects the modes not grouping through 'shuffle'.
+     * 
+     * @param skew_splitting True to split the hot keys
+     */
+    public void setSkewSplitting(boolean skew_splitting) {
+        if (skew_splitting) {
+            if (executor == null) {
+                throw new RuntimeException(
+                    "Skew splitting needs an executor!");
+            }
+            checkSetting("Skew splitting", enabledModes());
+        }
+        this.skew_splitting = skew_splitting;
+    }
+    
+    /**
+     * Enables the cluster mode: jobs are run by worker processes launched
+     * on this machine with the same class path, see 'cluster'. The
+     * combiner is applied by the workers only if it is serializable.
+     * 
+     * @param workers The number of worker processes, 0 to disable the
+     *                cluster mode
+     * @param jvm_options The options of the JVMs of the workers, e.g. their
+     *                    heap size
+     */
+    public void setCluster(int workers, String... jvm_options) {
+        if (workers < 0) {
+            throw new RuntimeException("Workers must not be negative!");
+        }
+        if (workers > 0) {
+            checkExclusive("Cluster");
+        }
+        this.cluster_workers = workers;
+        this.cluster_options = List.of(jvm_options);
+    }
+    
+    /**
+     * Moves the grouping of 'collect' (and of the partitions of 'shuffle')
+     * out of the heap: keys and values are encoded and appended to direct
+     * memory arenas, indexed by a table in direct memory, and decoded one
+     * group at a time while the groups are streamed. This keeps tens of
+     * millions of keys out of the reach of the garbage collector. It takes
+     * the place of spilling and of counting, and the pipelined, columnar
+     * and approximate modes reject it.
+     * 
+     * @param key_codec The codec of the keys, null to group on the heap
+     * @param value_codec The codec of the values
+     * @param arena_size The size in bytes of each arena of direct memory
+     */
+    public void setOffHeap(Codec<K> key_codec, Codec<V> value_codec,
+            int arena_size) {
+        if (key_codec != null && (value_codec == null || arena_size < 64)) {
+            throw new RuntimeException("Invalid off-heap configuration!");
+        }
+        if (key_codec != null) {
+            checkSetting("Off-heap grouping", enabledModes());
+        }
+        this.key_codec = key_codec;
+        this.value_codec = value_codec;
+        this.arena_size = arena_size;
+    }
+    
     /**
      * Executes the jobs received from 'emit' by invoking 'execute' on them,
      * then concatenates the output of the jobs to create the result.
+     * The output of each job is pre-aggregated by the combiner of the
+     * strategy, if any. If an executor is set, the jobs are executed
+     * concurrently on it and their output is concatenated in emission
+     * order.
      * 
      * @frozenSpot
      * 
@@ -56,12 +624,28 @@ public class JobSchedulerContext<K,V> {
      * @return A single stream of (key,value) pairs
      */
     public final Stream<Pair<K,V>> compute(Stream<AJob<K,V>> jobs) {
-        return jobs.flatMap(x -> x.execute());
+        if (executor == null) {
+            return jobs.flatMap(x -> combine(x.execute()));
+        }
+        
+        /* Submitting all jobs, each one drains its own stream */
+        List<Future<List<Pair<K,V>>>> futures = jobs
+            .map(x -> executor.submit(() -> drain(x)))
+            .collect(Collectors.toList());
+        
+        return futures
+            .stream()
+            .flatMap(x -> join(x).stream());
     }
 
     /**
      * Groups all the pairs with the same keys in a single pair, having the 
-     * same key and the list of all values.
+     * same key and the list of all values. If the strategy has a reducer,
+     * the values are folded as they arrive and the list holds only the
+     * result of the fold. If a spill threshold is set, the grouping is done
+     * by an external sort-merge, and if off-heap grouping is enabled it is
+     * done outside of the heap; otherwise, if the strategy opts into
+     * counting, the values are summed in a CountTable.
      * 
      * @frozenspot
      * 
@@ -70,19 +654,776 @@ public class JobSchedulerContext<K,V> {
      */
     public final Stream<Pair<K, List<V>>> collect(
             Stream<Pair<K,V>> computed_jobs) {
+        if (key_codec != null) {
+            return offHeap().group(computed_jobs);
+        }
+        if (spillThreshold > 0) {
+            return spilling(spillThreshold).group(computed_jobs);
+        }
+        Counting<K,V> counting = strat.counting();
+        if (counting != null) {
+            return count(computed_jobs, counting);
+        }
         
         /* Mapping the pairs by key */
         Map<K, List<V>> map = computed_jobs
             .collect(Collectors.groupingBy(
                 Pair::getKey, 
-                Collectors.mapping(Pair::getValue, Collectors.toList())
+                Collectors.mapping(Pair::getValue, values())
             ));
         
         /* To groups of Pair and return. */
         return map
             .entrySet()
             .stream()
-            .map(x -> new Pair(x.getKey(), x.getValue()));
+            .map(x -> new Pair<>(x.getKey(), x.getValue()));
+    }
+    
+    /**
+     * Parallel equivalent of 'collect(compute(jobs))'. Each job hashes its
+     * (combined) output into a fixed number of partitions; once all jobs are
+     * done, every partition is grouped by its own task on the executor, so
+     * no state is shared between workers. Partitions are streamed as soon
+     * as they are grouped, in completion order.
+     * 
+     * @frozenspot
+     * 
+     * @param jobs The jobs to compute
+     * @return Groups of pairs with the same key
+     */
+    public final Stream<Pair<K, List<V>>> shuffle(Stream<AJob<K,V>> jobs) {
+        if (executor == null) {
+            return arrange(collect(compute(jobs)));
+        }
+        int n = partitionCount();
+        if (skew_splitting) {
+            return shuffleSkewed(jobs, n);
+        }
+        
+        /* Map side: every job splits its output by partition */
+        List<Future<List<List<Pair<K,V>>>>> futures = jobs
+            .map(x -> executor.submit(() -> partition(drain(x), n, null)))
+            .collect(Collectors.toList());
+        List<List<List<Pair<K,V>>>> mapped = futures
+            .stream()
+            .map(JobSchedulerContext::join)
+            .collect(Collectors.toList());
+        RunStats current = stats;
+        if (current != null) {
+            current.markComputed();
+        }
+        return reduce(mapped, n, outputStage());
+    }
+    
+    /**
+     * Same as 'shuffle', balancing the partitions when a few keys hold most
+     * of the records. The jobs sample their output while it is computed,
+     * before combining it; once they are done, the hot keys are spread over
+     * several partitions. Their partial groups are set aside while the
+     * cold groups are streamed, then merged on the executor, one task per
+     * hot key, as the last groups of the stream (or before ordering them,
+     * with an output stage).
+     * 
+     * @param jobs The jobs to compute
+     * @param n The number of partitions
+     * @return Groups of pairs with the same key
+     */
+    private Stream<Pair<K, List<V>>> shuffleSkewed(Stream<AJob<K,V>> jobs,
+            int n) {
+        SkewDetector<K> skew = new SkewDetector<>(n);
+        
+        /* Map side: every job drains and samples its output */
+        List<Future<List<Pair<K,V>>>> futures = jobs
+            .map(x -> executor.submit(() -> {
+                SkewDetector<K>.Sampler sampler = skew.sampler();
+                List<Pair<K,V>> pairs = drain(x, sampler);
+                sampler.done();
+                return pairs;
+            }))
+            .collect(Collectors.toList());
+        List<List<Pair<K,V>>> outputs = futures
+            .stream()
+            .map(JobSchedulerContext::join)
+            .collect(Collectors.toList());
+        SkewDetector<K> hot = skew.detect() ? skew : null;
+        List<Future<List<List<Pair<K,V>>>>> partitioned = outputs
+            .stream()
+            .map(x -> executor.submit(() -> partition(x, n, hot)))
+            .collect(Collectors.toList());
+        List<List<List<Pair<K,V>>>> mapped = partitioned
+            .stream()
+            .map(JobSchedulerContext::join)
+            .collect(Collectors.toList());
+        RunStats current = stats;
+        if (current != null) {
+            current.markComputed();
+        }
+        
+        if (hot == null) {
+            return reduce(mapped, n, outputStage());
+        }
+        Stream<Pair<K, List<V>>> groups = reduce(mapped, n, null);
+        
+        /* The cold groups are streamed, the partial hot ones set aside */
+        Map<K, List<List<V>>> partial = new HashMap<>();
+        Stream<Pair<K, List<V>>> cold = groups.filter(x -> {
+            if (!hot.isHot(x.getKey())) {
+                return true;
+            }
+            partial.computeIfAbsent(x.getKey(), k -> new ArrayList<>())
+                .add(x.getValue());
+            return false;
+        });
+        /* Lazily merged, i.e. once all the cold groups are consumed */
+        Stream<Pair<K, List<V>>> merged = Stream.of(partial)
+            .flatMap(m -> m.entrySet()
+                .stream()
+                .map(x -> executor.submit(() -> new Pair<>(x.getKey(),
+                    mergeGroups(x.getValue()))))
+                .collect(Collectors.toList())
+                .stream())
+            .map(JobSchedulerContext::join);
+        return arrange(Stream.concat(cold, merged));
+    }
+    
+    /**
+     * Merges the partial groups of the same key, in a single pass.
+     * 
+     * @param parts The partial groups
+     * @return The group with the values of all of them
+     */
+    private List<V> mergeGroups(List<List<V>> parts) {
+        Reducer<V> reducer = strat.reducer();
+        if (reducer != null) {
+            V value = parts.get(0).get(0);
+            for (List<V> part : parts.subList(1, parts.size())) {
+                value = reducer.combine(value, part.get(0));
+            }
+            return Collections.singletonList(value);
+        }
+        
+        /* Groups summed by 'count' hold a single value even so */
+        Counting<K,V> counting = strat.counting();
+        if (counting != null && spillThreshold == 0 && key_codec == null) {
+            ToLongFunction<V> count = counting.getCount();
+            long sum = 0;
+            for (List<V> part : parts) {
+                sum += count.applyAsLong(part.get(0));
+            }
+            return Collections.singletonList(counting.getValue().apply(sum));
+        }
+        List<V> all = new ArrayList<>(
+            parts.stream().mapToInt(List::size).sum());
+        parts.forEach(all::addAll);
+        return all;
+    }
+    
+    /**
+     * Reduce side of 'shuffle' and 'cluster': one grouping task per
+     * partition, on the executor if it is set. With an output stage, every
+     * task also sorts (or selects) the groups of its partition, and the
+     * partitions are merged in order.
+     * 
+     * @param mapped For each job, the list of pairs of each partition
+     * @param n The number of partitions
+     * @param stage The output stage, or null
+     * @return Groups of pairs with the same key
+     */
+    private Stream<Pair<K, List<V>>> reduce(
+            List<List<List<Pair<K,V>>>> mapped, int n,
+            OutputStage<K,V> stage) {
+        if (stage != null) {
+            List<List<Pair<K, List<V>>>> parts;
+            if (executor == null) {
+                parts = IntStream.range(0, n)
+                    .mapToObj(i -> stage.select(group(mapped, i, n)))
+                    .collect(Collectors.toList());
+            } else {
+                parts = IntStream.range(0, n)
+                    .mapToObj(i -> executor.submit(
+                        () -> stage.select(group(mapped, i, n))))
+                    .collect(Collectors.toList())
+                    .stream()
+                    .map(JobSchedulerContext::join)
+                    .collect(Collectors.toList());
+            }
+            return stage.merge(parts);
+        }
+        
+        if (executor == null) {
+            return IntStream.range(0, n)
+                .mapToObj(i -> group(mapped, i, n))
+                .flatMap(x -> x);
+        }
+        CompletionService<Stream<Pair<K, List<V>>>> groups =
+            new ExecutorCompletionService<>(executor);
+        for (int i = 0; i < n; i++) {
+            int partition = i;
+            groups.submit(() -> group(mapped, partition, n));
+        }
+        
+        /* Closing the groups also closes the partitions 'output' did not
+           reach, deleting their spilled runs */
+        int[] taken = new int[1];
+        return IntStream.range(0, n)
+            .mapToObj(x -> {
+                taken[0]++;
+                return join(take(groups));
+            })
+            .flatMap(x -> x)
+            .onClose(() -> {
+                for (; taken[0] < n; taken[0]++) {
+                    join(take(groups)).close();
+                }
+            });
+    }
+    
+    /**
+     * Groups a partition of the output of the jobs.
+     * 
+     * @param mapped For each job, the list of pairs of each partition
+     * @param partition The partition to group
+     * @param n The number of partitions
+     * @return Groups of pairs with the same key
+     */
+    private Stream<Pair<K, List<V>>> group(
+            List<List<List<Pair<K,V>>>> mapped, int partition, int n) {
+        return group(mapped
+            .stream()
+            .flatMap(x -> x.get(partition).stream()), n);
+    }
+    
+    /**
+     * Cluster equivalent of 'shuffle'. The jobs are shipped to worker
+     * processes on this machine, which execute them, combine and partition
+     * their output and send it back; the partitions are then grouped here.
+     * The jobs of a worker that dies are run again by the others.
+     * Jobs, keys and values must be serializable, and the hash codes of the
+     * keys must not depend on the JVM (e.g. no identity hash codes).
+     * 
+     * @frozenspot
+     * 
+     * @param jobs The jobs to compute
+     * @return Groups of pairs with the same key
+     */
+    public final Stream<Pair<K, List<V>>> cluster(Stream<AJob<K,V>> jobs) {
+        if (cluster_workers == 0) {
+            throw new RuntimeException("Cluster mode is not enabled!");
+        }
+        int n = partitionCount();
+        Cluster<K,V> cluster = new Cluster<>(cluster_workers,
+            cluster_options, strat.combiner(), n);
+        return reduce(cluster.run(jobs), n, outputStage());
+    }
+    
+    /**
+     * Pipelined equivalent of 'collect(compute(jobs))'. The jobs (on the
+     * executor, if any) split their pairs by key hash into batches, merged
+     * by the combiner of the strategy within each batch; one aggregator
+     * thread per partition folds the batches as they arrive. Queues between
+     * the two stages are bounded, so a job blocks when an aggregator falls
+     * behind and memory does not grow with the input, only with the keys.
+     * 
+     * @frozenspot
+     * 
+     * @param jobs The jobs to compute
+     * @return Groups of pairs with the same key
+     */
+    public final Stream<Pair<K, List<V>>> pipeline(Stream<AJob<K,V>> jobs) {
+        if (batch_size == 0) {
+            throw new RuntimeException("Pipelined mode is not enabled!");
+        }
+        Pipeline<K,V,Object> pipeline = new Pipeline<>(values(),
+            strat.combiner(), partitionCount(), batch_size, queue_capacity);
+        return pipeline.run(jobs, executor);
+    }
+    
+    /**
+     * Columnar equivalent of 'collect(compute(jobs))'. Each job fills a
+     * PairBatch through 'executeBatch', and every batch is folded in place
+     * into the per-key containers of the values collector, so no Pair is
+     * created between the jobs and the grouping. If an executor is set,
+     * every job folds its own map on it and the maps are merged in emission
+     * order. Strategies opting into counting fold CountTables instead.
+     * 
+     * @frozenspot
+     * 
+     * @param jobs The jobs to compute
+     * @return Groups of pairs with the same key
+     */
+    public final Stream<Pair<K, List<V>>> collectBatches(
+            Stream<AJob<K,V>> jobs) {
+        if (batch_capacity == 0) {
+            throw new RuntimeException("Columnar mode is not enabled!");
+        }
+        Counting<K,V> counting = strat.counting();
+        if (counting != null) {
+            return countBatches(jobs, counting);
+        }
+        Collector<V, Object, List<V>> values = values();
+        Map<K, Object> map;
+        if (executor == null) {
+            map = new HashMap<>();
+            Map<K, Object> target = map;
+            jobs.forEach(x -> fold(x, target, values));
+        } else {
+            List<Future<Map<K, Object>>> futures = jobs
+                .map(x -> executor.submit(
+                    () -> fold(x, new HashMap<>(), values)))
+                .collect(Collectors.toList());
+            map = new HashMap<>();
+            BinaryOperator<Object> merge = values.combiner();
+            for (Future<Map<K, Object>> f : futures) {
+                join(f).forEach((k, v) -> map.merge(k, v, merge));
+            }
+        }
+        
+        Function<Object, List<V>> finisher = values.finisher();
+        return map
+            .entrySet()
+            .stream()
+            .map(x -> new Pair<>(x.getKey(), finisher.apply(x.getValue())));
+    }
+    
+    /**
+     * Approximate equivalent of 'collect(compute(jobs))', in one pass and
+     * in memory independent of the input. Each job streams its pairs into
+     * its own sketches (a Count-Min sketch of the counts of the keys, a
+     * HyperLogLog of the keys, and the heaviest keys seen, each with a
+     * HyperLogLog of its values), which are merged into the result as the
+     * job is done; so at most one set of sketches per running job, plus
+     * the result, is alive. Pairs are not combined, as the combined output
+     * of a job is not bounded.
+     * 
+     * @frozenspot
+     * 
+     * @param jobs The jobs to compute
+     * @return The merged sketches, with their error bounds
+     */
+    public final ApproximateCounts<K> approximate(Stream<AJob<K,V>> jobs) {
+        if (heavy_keys == 0) {
+            throw new RuntimeException("Approximate mode is not enabled!");
+        }
+        ApproximateCounts<K> total = new ApproximateCounts<>(heavy_keys,
+            epsilon, delta, sketch_key_hash);
+        if (executor == null) {
+            jobs.forEach(x -> total.merge(sketch(x)));
+            return total;
+        }
+        List<Future<?>> futures = jobs
+            .map(x -> executor.submit(() -> {
+                ApproximateCounts<K> sketch = sketch(x);
+                synchronized (total) {
+                    total.merge(sketch);
+                }
+            }))
+            .collect(Collectors.toList());
+        for (Future<?> f : futures) {
+            join(f);
+        }
+        return total;
+    }
+    
+    /**
+     * Streams the output of a job into new sketches.
+     * 
+     * @param job The job to execute
+     * @return The sketches of the job
+     */
+    private ApproximateCounts<K> sketch(AJob<K,V> job) {
+        ApproximateCounts<K> sketch = new ApproximateCounts<>(heavy_keys,
+            epsilon, delta, sketch_key_hash);
+        Counting<K,V> counting = strat.counting();
+        ToLongFunction<V> count = counting == null
+            ? x -> 1
+            : counting.getCount();
+        try (Stream<Pair<K,V>> pairs = job.execute()) {
+            pairs.forEach(x -> sketch.add(x.getKey(),
+                count.applyAsLong(x.getValue()),
+                sketch_value_hash.applyAsLong(x.getValue())));
+        }
+        return sketch;
+    }
+    
+    /**
+     * Runs a job through 'executeBatch', accumulating its batches.
+     * 
+     * @param job The job to execute
+     * @param map The containers of the values, by key
+     * @param values The collector of the values of a key
+     * @return The map itself
+     */
+    private Map<K, Object> fold(AJob<K,V> job, Map<K, Object> map,
+            Collector<V, Object, List<V>> values) {
+        Supplier<Object> supplier = values.supplier();
+        BiConsumer<Object, V> accumulator = values.accumulator();
+        job.executeBatch(new PairBatch<>(batch_capacity), batch -> {
+            for (int i = 0, n = batch.size(); i < n; i++) {
+                Object container = map.get(batch.getKey(i));
+                if (container == null) {
+                    container = supplier.get();
+                    map.put(batch.getKey(i), container);
+                }
+                accumulator.accept(container, batch.getValue(i));
+            }
+        });
+        return map;
+    }
+    
+    /**
+     * Same as 'collectBatches', summing the counts in CountTables.
+     * 
+     * @param jobs The jobs to compute
+     * @param counting The counts of the strategy
+     * @return Groups of pairs with the same key
+     */
+    private Stream<Pair<K, List<V>>> countBatches(Stream<AJob<K,V>> jobs,
+            Counting<K,V> counting) {
+        CountTable<K> table;
+        if (executor == null) {
+            table = new CountTable<>(counting.getPacker());
+            CountTable<K> target = table;
+            jobs.forEach(x -> countBatch(x, target, counting));
+        } else {
+            List<Future<CountTable<K>>> futures = jobs
+                .map(x -> executor.submit(() -> countBatch(x,
+                    new CountTable<>(counting.getPacker()), counting)))
+                .collect(Collectors.toList());
+            table = new CountTable<>(counting.getPacker());
+            for (Future<CountTable<K>> f : futures) {
+                table.addAll(join(f));
+            }
+        }
+        return table.groups(counting.getValue());
+    }
+    
+    /**
+     * Runs a job through 'executeBatch', summing its counts.
+     * 
+     * @param job The job to execute
+     * @param table The table of the counts
+     * @param counting The counts of the strategy
+     * @return The table itself
+     */
+    private CountTable<K> countBatch(AJob<K,V> job, CountTable<K> table,
+            Counting<K,V> counting) {
+        ToLongFunction<V> count = counting.getCount();
+        job.executeBatch(new PairBatch<>(batch_capacity), batch -> {
+            for (int i = 0, n = batch.size(); i < n; i++) {
+                table.add(batch.getKey(i),
+                    count.applyAsLong(batch.getValue(i)));
+            }
+        });
+        return table;
+    }
+    
+    /**
+     * Sums the values of each key in a CountTable.
+     * 
+     * @param pairs The pairs to count
+     * @param counting The counts of the strategy
+     * @return Groups of pairs with the same key, holding the sums
+     */
+    private Stream<Pair<K, List<V>>> count(Stream<Pair<K,V>> pairs,
+            Counting<K,V> counting) {
+        CountTable<K> table = new CountTable<>(counting.getPacker());
+        ToLongFunction<V> count = counting.getCount();
+        pairs.forEach(x -> table.add(x.getKey(),
+            count.applyAsLong(x.getValue())));
+        return table.groups(counting.getValue());
+    }
+    
+    /**
+     * Groups the pairs of one of the partitions of 'shuffle', sharing the
+     * spill threshold among the partitions.
+     * 
+     * @param pairs The pairs of the partition
+     * @param n The number of partitions
+     * @return Groups of pairs with the same key
+     */
+    private Stream<Pair<K, List<V>>> group(Stream<Pair<K,V>> pairs, int n) {
+        RunStats current = stats;
+        Stream<Pair<K, List<V>>> groups;
+        if (key_codec != null) {
+            groups = offHeap().group(pairs);
+            if (current != null) {
+                current.markGrouped();
+            }
+            return groups;
+        }
+        if (spillThreshold > 0) {
+            groups = spilling(Math.max(1, spillThreshold / n)).group(pairs);
+            if (current != null) {
+                current.markGrouped();
+            }
+            return groups;
+        }
+        Counting<K,V> counting = strat.counting();
+        if (counting != null) {
+            groups = count(pairs, counting);
+            if (current != null) {
+                current.markGrouped();
+            }
+            return groups;
+        }
+        Map<K, List<V>> map = pairs
+            .collect(Collectors.groupingBy(
+                Pair::getKey,
+                Collectors.mapping(Pair::getValue, values())
+            ));
+        if (current != null) {
+            current.markGrouped();
+        }
+        return map
+            .entrySet()
+            .stream()
+            .map(x -> new Pair<>(x.getKey(), x.getValue()));
+    }
+    
+    /**
+     * Creates a grouper spilling to disk past the given budget.
+     * 
+     * @param budget The number of records to keep in memory
+     * @return The grouper
+     */
+    private SpillingGrouper<K,V,Object> spilling(long budget) {
+        return new SpillingGrouper<>(
+            values(), budget, strat.reducer() == null);
+    }
+    
+    /**
+     * Creates the output stage.
+     * 
+     * @return The stage, or null if the output is neither sorted nor
+     *         limited to the top K groups
+     */
+    private OutputStage<K,V> outputStage() {
+        if (top_k == 0 && !sorted_output) {
+            return null;
+        }
+        Comparator<Pair<K, List<V>>> ranking = strat.ranking();
+        if (ranking == null) {
+            throw new RuntimeException("Strategy has no ranking!");
+        }
+        RunStats current = stats;
+        return new OutputStage<>(ranking, top_k,
+            current == null ? x -> { } : current::addKeys);
+    }
+    
+    /**
+     * Applies the output stage to all the groups at once, for the modes
+     * that are not partitioned. The sort is an Arrays.parallelSort.
+     * 
+     * @param groups The groups
+     * @return The ordered (or selected) groups, or the groups themselves
+     *         without an output stage
+     */
+    private Stream<Pair<K, List<V>>> arrange(
+            Stream<Pair<K, List<V>>> groups) {
+        OutputStage<K,V> stage = outputStage();
+        return stage == null ? groups : stage.select(groups).stream();
+    }
+    
+    /**
+     * Creates a grouper storing the pairs off-heap.
+     * 
+     * @return The grouper
+     */
+    private OffHeapGrouper<K,V> offHeap() {
+        return new OffHeapGrouper<>(
+            key_codec, value_codec, strat.reducer(), arena_size);
+    }
+    
+    /**
+     * Splits pairs by the hash of their key.
+     * 
+     * @param pairs The pairs to split
+     * @param n The number of partitions
+     * @param skew The hot keys to spread over several partitions, or null
+     * @return The list of pairs of each partition
+     */
+    private List<List<Pair<K,V>>> partition(List<Pair<K,V>> pairs, int n,
+            SkewDetector<K> skew) {
+        List<List<Pair<K,V>>> buckets = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        for (int i = 0; i < pairs.size(); i++) {
+            Pair<K,V> p = pairs.get(i);
+            int partition = skew == null
+                ? partitionOf(p.getKey(), n)
+                : skew.partitionOf(p.getKey(), i);
+            buckets.get(partition).add(p);
+        }
+        return buckets;
+    }
+    
+    /**
+     * Computes the partition of a key.
+     * 
+     * @param key The key
+     * @param n The number of partitions
+     * @return The partition index, between 0 and n - 1
+     */
+    static int partitionOf(Object key, int n) {
+        int h = key.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), n);
+    }
+    
+    /**
+     * Gets the number of partitions used by 'shuffle'.
+     * 
+     * @return The configured number of partitions, or the parallelism of
+     *         the executor if it is not set
+     */
+    private int partitionCount() {
+        if (partitions > 0) {
+            return partitions;
+        }
+        if (executor instanceof ForkJoinPool) {
+            return ((ForkJoinPool) executor).getParallelism();
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+    
+    /**
+     * Builds the collector used to aggregate the values of a single key.
+     * 
+     * @return A collector folding the values with the reducer of the
+     *         strategy, or gathering all of them if there is none
+     */
+    @SuppressWarnings("unchecked")
+    Collector<V, Object, List<V>> values() {
+        Reducer<V> reducer = strat.reducer();
+        Collector<V, ?, List<V>> values = reducer == null
+            ? Collectors.toList()
+            : Collectors.collectingAndThen(
+                Collectors.reducing(
+                    reducer.getIdentity(), reducer.getOperator()),
+                Collections::singletonList);
+        return (Collector<V, Object, List<V>>) values;
+    }
+    
+    /**
+     * Executes a job and materializes its output, so that the work is done
+     * by the calling (worker) thread.
+     * 
+     * @param job The job to execute
+     * @return The pairs generated by the job
+     */
+    private List<Pair<K,V>> drain(AJob<K,V> job) {
+        return drain(job, x -> { });
+    }
+    
+    /**
+     * Same as 'drain', showing each pair emitted by the job, before it is
+     * combined, to an observer.
+     * 
+     * @param job The job to execute
+     * @param observer Sees the pairs generated by the job
+     * @return The pairs generated by the job
+     */
+    private List<Pair<K,V>> drain(AJob<K,V> job,
+            Consumer<? super Pair<K,V>> observer) {
+        RunStats current = stats;
+        if (current != null) {
+            return drainTimed(job, current, observer);
+        }
+        try (Stream<Pair<K,V>> pairs = job.execute()) {
+            return combine(pairs.peek(observer))
+                .collect(Collectors.toList());
+        }
+    }
+    
+    /**
+     * Same as 'drain', recording the execution in the statistics and as a
+     * JobEvent.
+     * 
+     * @param job The job to execute
+     * @param current The statistics of the run
+     * @param observer Sees the pairs generated by the job
+     * @return The pairs generated by the job
+     */
+    private List<Pair<K,V>> drainTimed(AJob<K,V> job, RunStats current,
+            Consumer<? super Pair<K,V>> observer) {
+        JobEvent event = new JobEvent();
+        long[] records = new long[1];
+        long begin = System.nanoTime();
+        event.begin();
+        
+        List<Pair<K,V>> result;
+        try (Stream<Pair<K,V>> pairs = job.execute()) {
+            result = combine(pairs.peek(x -> records[0]++).peek(observer))
+                .collect(Collectors.toList());
+        }
+        
+        event.end();
+        current.addJob(job.toString(), System.nanoTime() - begin,
+            records[0], job.bytesRead());
+        if (event.shouldCommit()) {
+            event.job = job.toString();
+            event.records = records[0];
+            event.bytes = job.bytesRead();
+            event.commit();
+        }
+        return result;
+    }
+    
+    /**
+     * Merges the values with the same key in the output of a single job,
+     * using the combiner of the strategy.
+     * 
+     * @param pairs The output of a job
+     * @return The combined output, or the output itself if the strategy
+     *         has no combiner
+     */
+    private Stream<Pair<K,V>> combine(Stream<Pair<K,V>> pairs) {
+        BinaryOperator<V> combiner = strat.combiner();
+        if (combiner == null) {
+            return pairs;
+        }
+        
+        Map<K,V> combined;
+        try (pairs) {
+            combined = pairs.collect(
+                Collectors.toMap(Pair::getKey, Pair::getValue, combiner));
+        }
+        return combined
+            .entrySet()
+            .stream()
+            .map(x -> new Pair<>(x.getKey(), x.getValue()));
+    }
+    
+    /**
+     * Waits for the next completed task of a completion service.
+     * 
+     * @param service The completion service
+     * @return The future of the completed task
+     */
+    private static <T> Future<T> take(CompletionService<T> service) {
+        try {
+            return service.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while collecting!", e);
+        }
+    }
+    
+    /**
+     * Waits for the result of a job.
+     * 
+     * @param future The pending result of a job
+     * @return The result of the job
+     */
+    private static <T> T join(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while computing jobs!", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Job failed!", e.getCause());
+        }
     }
     
 }
@@ -8,7 +8,9 @@
 
 package com.mycompany.framework;
 
+import java.util.Comparator;
 import java.util.List;
+import java.util.function.BinaryOperator;
 import java.util.stream.Stream;
 
 
@@ -24,6 +26,77 @@ abstract public class JobSchedulerStrategy<K,V> {
     protected abstract Stream<AJob<K,V>> emit();
     
     
+    /**
+     * Optional combiner, used to pre-aggregate the output of each job before
+     * 'collect': the values emitted by the same job for the same key are
+     * merged into a single value. It must be associative. By default it is
+     * the combine function of the reducer, if any.
+     * 
+     * @hotspot
+     * 
+     * @return The combiner, or null if the output of the jobs must not be
+     *         combined
+     */
+    protected BinaryOperator<V> combiner() {
+        Reducer<V> reducer = reducer();
+        return reducer == null ? null : reducer.getOperator();
+    }
+    
+    
+    /**
+     * Optional reducer, used by 'collect' to fold the values of each key in
+     * place instead of keeping all of them in a list. When it is given, each
+     * group passed to 'output' holds a single value.
+     * 
+     * @hotspot
+     * 
+     * @return The reducer, or null if all the values must be kept
+     */
+    protected Reducer<V> reducer() {
+        return null;
+    }
+    
+    
+    /**
+     * Optional count-style aggregation: when it is given, the values of a
+     * key are summed as longs in a CountTable by 'collect', instead of being
+     * grouped by the reducer in a map of lists. It must then agree with the
+     * reducer, which is still used on the other paths (spilling, pipeline).
+     * 
+     * @hotspot
+     * 
+     * @return The description of the counts, or null to group the values
+     */
+    protected Counting<K,V> counting() {
+        return null;
+    }
+    
+    
+    /**
+     * Optional ranking of the groups, used when the output is sorted or
+     * limited to the top K groups: the groups ranked first come first.
+     * 
+     * @hotspot
+     * 
+     * @return The ranking, or null if the groups cannot be ranked
+     */
+    protected Comparator<Pair<K, List<V>>> ranking() {
+        return null;
+    }
+    
+    
+    /**
+     * Prints the result of 'approximate', in approximate mode.
+     * 
+     * @hotspot
+     * 
+     * @param counts The estimated counts, with their error bounds
+     */
+    protected void outputApproximate(ApproximateCounts<K> counts) {
+        throw new RuntimeException("Strategy has no approximate output!");
+    }
+    
+    
     /**
      * Prints the result of 'collect' (@forzenspot).
      * 
@@ -0,0 +1,316 @@
+/*
+* OffHeapGrouper
+*
+* @description: Groups pairs by key outside of the Java heap: encoded keys
+*               and values are appended to direct memory arenas, indexed by
+*               an open-addressing table also held in direct memory.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+
+class OffHeapGrouper<K,V> {
+
+    /* A slot of the index: the hash of the key and the address of its entry */
+    private static final int SLOT_BYTES = Integer.BYTES + Long.BYTES;
+
+    /* Initial and maximum number of slots, so that the index fits a buffer */
+    private static final int INITIAL_SLOTS = 1 << 10;
+    private static final int MAX_SLOTS = 1 << 27;
+
+    /* Header of a value record: the address of the next value and the size */
+    private static final int VALUE_HEADER = Long.BYTES + Integer.BYTES;
+
+    private final Codec<K> keys;
+    private final Codec<V> values;
+
+    /* Folds the values of a key, null to keep all of them */
+    private final Reducer<V> reducer;
+
+    /* The arenas holding the records, and the size of each one */
+    private final List<ByteBuffer> arenas = new ArrayList<>();
+    private final int arena_size;
+
+    /* The bytes used in the last arena */
+    private int used = 0;
+
+    /* The index, its number of slots and of used slots */
+    private ByteBuffer index;
+    private int slots;
+    private int size = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param keys The codec of the keys
+     * @param values The codec of the values
+     * @param reducer Folds the values of a key, null to keep all of them
+     * @param arena_size The size in bytes of each arena; a record (a key,
+     *                   or a value) must fit in an arena
+     */
+    OffHeapGrouper(Codec<K> keys, Codec<V> values, Reducer<V> reducer,
+            int arena_size) {
+        this.keys = keys;
+        this.values = values;
+        this.reducer = reducer;
+        this.arena_size = arena_size;
+        this.slots = INITIAL_SLOTS;
+        this.index = ByteBuffer.allocateDirect(slots * SLOT_BYTES);
+    }
+
+    /**
+     * Groups pairs by key. The groups are decoded one at a time while they
+     * are streamed, so the grouped data never lives on the heap as a whole.
+     * The direct memory is released when the grouper and its stream are
+     * garbage collected.
+     *
+     * @param pairs The pairs to group
+     * @return Groups of pairs with the same key
+     */
+    Stream<Pair<K, List<V>>> group(Stream<Pair<K,V>> pairs) {
+        try (pairs) {
+            pairs.forEach(x -> add(x.getKey(), x.getValue()));
+        }
+        return IntStream.range(0, slots)
+            .mapToLong(i -> index.getLong(i * SLOT_BYTES + Integer.BYTES))
+            .filter(x -> x != 0)
+            .mapToObj(this::read);
+    }
+
+    /**
+     * Adds a pair.
+     *
+     * Entry of a key: [key size][key][first value][last value]
+     * Value record:   [next value][value size][value]
+     *
+     * @param key The key
+     * @param value The value
+     */
+    private void add(K key, V value) {
+        byte[] k = keys.encode(key);
+        int hash = hash(k);
+        int mask = slots - 1;
+        int i = hash & mask;
+        while (true) {
+            long entry = index.getLong(i * SLOT_BYTES + Integer.BYTES);
+            if (entry == 0) {
+                break;
+            }
+            if (index.getInt(i * SLOT_BYTES) == hash && sameKey(entry, k)) {
+                append(entry, k.length, value);
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+
+        long entry = allocate(Integer.BYTES + k.length + 2 * Long.BYTES);
+        ByteBuffer arena = arena(entry);
+        int offset = offset(entry);
+        arena.putInt(offset, k.length);
+        arena.position(offset + Integer.BYTES);
+        arena.put(k);
+        long record = newValue(reducer == null
+            ? value
+            : reducer.combine(reducer.getIdentity(), value));
+        arena.putLong(offset + Integer.BYTES + k.length, record);
+        arena.putLong(offset + Integer.BYTES + k.length + Long.BYTES, record);
+
+        index.putInt(i * SLOT_BYTES, hash);
+        index.putLong(i * SLOT_BYTES + Integer.BYTES, entry);
+        if (++size > slots / 3 * 2) {
+            rehash();
+        }
+    }
+
+    /**
+     * Adds a value to an existing key. With a reducer the value is folded
+     * into the current one, in place if its encoding has the same size.
+     *
+     * @param entry The address of the entry of the key
+     * @param key_size The size of the encoded key
+     * @param value The value
+     */
+    private void append(long entry, int key_size, V value) {
+        ByteBuffer arena = arena(entry);
+        int links = offset(entry) + Integer.BYTES + key_size;
+        long last = arena.getLong(links + Long.BYTES);
+
+        if (reducer == null) {
+            long record = newValue(value);
+            arena(last).putLong(offset(last), record);
+            arena.putLong(links + Long.BYTES, record);
+            return;
+        }
+
+        byte[] v = values.encode(reducer.combine(decodeValue(last), value));
+        ByteBuffer old = arena(last);
+        int offset = offset(last);
+        if (old.getInt(offset + Long.BYTES) == v.length) {
+            old.position(offset + VALUE_HEADER);
+            old.put(v);
+        } else {
+            long record = newValue(v);
+            arena.putLong(links, record);
+            arena.putLong(links + Long.BYTES, record);
+        }
+    }
+
+    private long newValue(V value) {
+        return newValue(values.encode(value));
+    }
+
+    /**
+     * Appends a value record, with no next value.
+     *
+     * @param v The encoded value
+     * @return The address of the record
+     */
+    private long newValue(byte[] v) {
+        long record = allocate(VALUE_HEADER + v.length);
+        ByteBuffer arena = arena(record);
+        int offset = offset(record);
+        arena.putLong(offset, 0);
+        arena.putInt(offset + Long.BYTES, v.length);
+        arena.position(offset + VALUE_HEADER);
+        arena.put(v);
+        return record;
+    }
+
+    /**
+     * Decodes the group of an entry.
+     *
+     * @param entry The address of the entry
+     * @return The key and its values
+     */
+    private Pair<K, List<V>> read(long entry) {
+        ByteBuffer arena = arena(entry);
+        int offset = offset(entry);
+        int key_size = arena.getInt(offset);
+        K key = keys.decode(slice(arena, offset + Integer.BYTES, key_size));
+        long record = arena.getLong(offset + Integer.BYTES + key_size);
+
+        if (reducer != null) {
+            return new Pair<>(key,
+                Collections.singletonList(decodeValue(record)));
+        }
+        List<V> group = new ArrayList<>();
+        while (record != 0) {
+            group.add(decodeValue(record));
+            record = arena(record).getLong(offset(record));
+        }
+        return new Pair<>(key, group);
+    }
+
+    private V decodeValue(long record) {
+        ByteBuffer arena = arena(record);
+        int offset = offset(record);
+        int size = arena.getInt(offset + Long.BYTES);
+        return values.decode(slice(arena, offset + VALUE_HEADER, size));
+    }
+
+    /**
+     * Compares the key of an entry with an encoded key.
+     *
+     * @param entry The address of the entry
+     * @param k The encoded key
+     * @return True if they are the same key
+     */
+    private boolean sameKey(long entry, byte[] k) {
+        ByteBuffer arena = arena(entry);
+        int offset = offset(entry);
+        if (arena.getInt(offset) != k.length) {
+            return false;
+        }
+        offset += Integer.BYTES;
+        for (int j = 0; j < k.length; j++) {
+            if (arena.get(offset + j) != k[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Doubles the index, reusing the stored hashes.
+     */
+    private void rehash() {
+        if (slots >= MAX_SLOTS) {
+            throw new RuntimeException("Too many keys for the off-heap index!");
+        }
+        ByteBuffer old = index;
+        int old_slots = slots;
+        slots *= 2;
+        index = ByteBuffer.allocateDirect(slots * SLOT_BYTES);
+        int mask = slots - 1;
+        for (int j = 0; j < old_slots; j++) {
+            long entry = old.getLong(j * SLOT_BYTES + Integer.BYTES);
+            if (entry != 0) {
+                int hash = old.getInt(j * SLOT_BYTES);
+                int i = hash & mask;
+                while (index.getLong(i * SLOT_BYTES + Integer.BYTES) != 0) {
+                    i = (i + 1) & mask;
+                }
+                index.putInt(i * SLOT_BYTES, hash);
+                index.putLong(i * SLOT_BYTES + Integer.BYTES, entry);
+            }
+        }
+    }
+
+    /**
+     * Reserves space in the current arena, opening a new one if it is full.
+     * An address is the index of the arena in the high 32 bits and the
+     * offset in the low ones; the first 8 bytes of the first arena are
+     * skipped so that 0 is never a valid address.
+     *
+     * @param bytes The size of the record
+     * @return The address of the record
+     */
+    private long allocate(int bytes) {
+        if (bytes > arena_size - Long.BYTES) {
+            throw new RuntimeException("Record larger than an off-heap arena!");
+        }
+        if (arenas.isEmpty() || arena_size - used < bytes) {
+            arenas.add(ByteBuffer.allocateDirect(arena_size));
+            used = arenas.size() == 1 ? Long.BYTES : 0;
+        }
+        int offset = used;
+        used += bytes;
+        return ((long) (arenas.size() - 1) << 32) | offset;
+    }
+
+    private ByteBuffer arena(long address) {
+        return arenas.get((int) (address >>> 32));
+    }
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+
+    private static ByteBuffer slice(ByteBuffer arena, int offset, int size) {
+        return arena.duplicate().limit(offset + size).position(offset).slice();
+    }
+
+    /**
+     * Hashes an encoded key, spreading the bits so that linear probing
+     * does not cluster.
+     *
+     * @param k The encoded key
+     * @return The hash
+     */
+    private static int hash(byte[] k) {
+        int h = 1;
+        for (byte b : k) {
+            h = 31 * h + b;
+        }
+        return (int) ((h * 0x9E3779B97F4A7C15L) >>> 32);
+    }
+}
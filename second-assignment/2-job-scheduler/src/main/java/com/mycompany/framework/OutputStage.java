@@ -0,0 +1,146 @@
+/*
+* OutputStage
+*
+* @description: Orders the groups passed to 'output' by the ranking of the
+*               strategy, keeping either all of them or only the first K.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+
+class OutputStage<K,V> {
+
+    /* The groups ranked first come first in the output */
+    private final Comparator<Pair<K, List<V>>> ranking;
+
+    /* The number of groups to keep, 0 to keep all of them */
+    private final int top_k;
+
+    /* Sees the number of groups of each 'select', before selecting them */
+    private final LongConsumer counter;
+
+    /**
+     * Constructor.
+     *
+     * @param ranking The order of the output
+     * @param top_k The number of groups to keep, 0 to keep all of them
+     * @param counter Sees the number of groups of each 'select', e.g. to
+     *                count the keys dropped by the top K too
+     */
+    OutputStage(Comparator<Pair<K, List<V>>> ranking, int top_k,
+            LongConsumer counter) {
+        this.ranking = ranking;
+        this.top_k = top_k;
+        this.counter = counter;
+    }
+
+    /**
+     * Sorts groups, or selects the first K with a bounded heap whose top is
+     * the worst group kept so far. The groups are closed.
+     *
+     * @param groups The groups, e.g. of a partition
+     * @return The selected groups, sorted
+     */
+    @SuppressWarnings("unchecked")
+    List<Pair<K, List<V>>> select(Stream<Pair<K, List<V>>> groups) {
+        /* Closing the groups deletes their spilled runs, if any */
+        try (groups) {
+            if (top_k == 0) {
+                Pair<K, List<V>>[] sorted = groups.toArray(Pair[]::new);
+                counter.accept(sorted.length);
+                Arrays.parallelSort(sorted, ranking);
+                return Arrays.asList(sorted);
+            }
+
+            PriorityQueue<Pair<K, List<V>>> heap =
+                new PriorityQueue<>(top_k + 1, ranking.reversed());
+            long[] seen = new long[1];
+            groups.forEach(x -> {
+                seen[0]++;
+                if (heap.size() < top_k) {
+                    heap.add(x);
+                } else if (ranking.compare(x, heap.peek()) < 0) {
+                    heap.poll();
+                    heap.add(x);
+                }
+            });
+            counter.accept(seen[0]);
+            List<Pair<K, List<V>>> selected = new ArrayList<>(heap);
+            selected.sort(ranking);
+            return selected;
+        }
+    }
+
+    /**
+     * Merges the sorted selections of the partitions, keeping the first K.
+     *
+     * @param parts The output of 'select' for each partition
+     * @return The sorted groups
+     */
+    Stream<Pair<K, List<V>>> merge(List<List<Pair<K, List<V>>>> parts) {
+        Stream<Pair<K, List<V>>> merged = StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(new Merger(parts),
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+        return top_k == 0 ? merged : merged.limit(top_k);
+    }
+
+    /**
+     * K-way merge of sorted lists.
+     */
+    private class Merger implements Iterator<Pair<K, List<V>>> {
+        /* The next group of each list, with the rest of the list */
+        private final PriorityQueue<Head> heads = new PriorityQueue<>(
+            (a, b) -> ranking.compare(a.group, b.group));
+
+        Merger(List<List<Pair<K, List<V>>>> parts) {
+            for (List<Pair<K, List<V>>> part : parts) {
+                Iterator<Pair<K, List<V>>> it = part.iterator();
+                if (it.hasNext()) {
+                    heads.add(new Head(it.next(), it));
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public Pair<K, List<V>> next() {
+            Head head = heads.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            if (head.rest.hasNext()) {
+                heads.add(new Head(head.rest.next(), head.rest));
+            }
+            return head.group;
+        }
+    }
+
+    private class Head {
+        final Pair<K, List<V>> group;
+        final Iterator<Pair<K, List<V>>> rest;
+
+        Head(Pair<K, List<V>> group, Iterator<Pair<K, List<V>>> rest) {
+            this.group = group;
+            this.rest = rest;
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.mycompany.framework;
 
-public class Pair<K,V>{
+import java.io.Serializable;
+
+public class Pair<K,V> implements Serializable{
+    private static final long serialVersionUID = 1L;
     K key;
     V value;
     
@@ -0,0 +1,80 @@
+/*
+* PairBatch
+*
+* @description: Fixed-size batch of (key,value) pairs stored as parallel
+*               arrays, so that jobs can hand their output to the framework
+*               without allocating a Pair per record.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import java.util.Arrays;
+
+
+public final class PairBatch<K,V> {
+
+    /* The keys and the values, the i-th value belonging to the i-th key */
+    private final Object[] keys;
+    private final Object[] values;
+
+    /* The number of pairs in the batch */
+    private int size;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity The maximum number of pairs of the batch
+     */
+    public PairBatch(int capacity) {
+        if (capacity < 1) {
+            throw new RuntimeException("Batch capacity must be positive!");
+        }
+        this.keys = new Object[capacity];
+        this.values = new Object[capacity];
+    }
+
+    /**
+     * Appends a pair to the batch.
+     *
+     * @param key The key
+     * @param value The value
+     * @return True if the batch is full after the append
+     */
+    public boolean add(K key, V value) {
+        if (size == keys.length) {
+            throw new RuntimeException("Batch is full!");
+        }
+        keys[size] = key;
+        values[size] = value;
+        return ++size == keys.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public K getKey(int i) {
+        return (K) keys[i];
+    }
+
+    @SuppressWarnings("unchecked")
+    public V getValue(int i) {
+        return (V) values[i];
+    }
+
+    /**
+     * Empties the batch so that it can be refilled, releasing the pairs.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0, size, null);
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+    }
+}
@@ -0,0 +1,39 @@
+/*
+* PhaseEvent
+*
+* @description: Flight Recorder event summarizing a phase of a run.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+
+@Name("com.mycompany.framework.Phase")
+@Label("Phase")
+@Category("Job Scheduler")
+@Description("Time spent in a phase (emit, compute, collect, output) of a run")
+class PhaseEvent extends Event {
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Time")
+    @Description("Time attributed to the phase; phases of a lazy or "
+        + "parallel run overlap, so this is not the event duration")
+    @Timespan
+    long time;
+
+    @Label("Records")
+    long records;
+
+    @Label("Distinct Keys")
+    long keys;
+}
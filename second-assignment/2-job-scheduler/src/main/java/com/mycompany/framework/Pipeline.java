@@ -0,0 +1,304 @@
+/*
+* Pipeline
+*
+* @description: Staged execution of the jobs, where mapper stages and
+*               aggregator stages run concurrently and exchange batches of
+*               pairs through bounded queues.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+
+class Pipeline<K,V,A> {
+
+    /* End of the batches of a queue; compared by identity */
+    private final List<Pair<K,V>> end_of_stream = new ArrayList<>();
+
+    /* How long a blocked producer waits before checking for failures */
+    private static final long POLL_MILLIS = 100;
+
+    /* The collector aggregating the values of a key */
+    private final Supplier<A> supplier;
+    private final BiConsumer<A, V> accumulator;
+    private final Function<A, List<V>> finisher;
+
+    /* Merges the values of a key within a batch, null to keep them all */
+    private final BinaryOperator<V> combiner;
+
+    private final int partitions;
+    private final int batch_size;
+
+    /* One queue, hence one aggregator, per partition */
+    private final List<BlockingQueue<List<Pair<K,V>>>> queues;
+
+    /* Set when a mapper or an aggregator fails, to stop all of them */
+    private volatile Throwable failure;
+
+    /**
+     * Constructor.
+     *
+     * @param values The collector aggregating the values of a key
+     * @param combiner Merges the values of a key within a batch, or null
+     * @param partitions The number of aggregators
+     * @param batch_size The number of pairs in a batch
+     * @param capacity The number of batches an aggregator can lag behind
+     */
+    Pipeline(Collector<V, A, List<V>> values, BinaryOperator<V> combiner,
+            int partitions, int batch_size, int capacity) {
+        this.supplier = values.supplier();
+        this.accumulator = values.accumulator();
+        this.finisher = values.finisher();
+        this.combiner = combiner;
+        this.partitions = partitions;
+        this.batch_size = batch_size;
+        this.queues = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++) {
+            queues.add(new ArrayBlockingQueue<>(capacity));
+        }
+    }
+
+    /**
+     * Runs the jobs. Mappers (the jobs, on 'executor' or on the calling
+     * thread) split their pairs into per-partition batches, which are
+     * handed to the aggregator of the partition. A mapper blocks when the
+     * queue of an aggregator is full, so memory stays bounded whatever the
+     * size of the input. When a stage fails, the other ones stop at their
+     * next batch, and the run fails once all the mappers are done.
+     *
+     * @param jobs The jobs to run
+     * @param executor The executor of the mappers, null to run them on the
+     *                 calling thread
+     * @return Groups of pairs with the same key, partition by partition
+     */
+    Stream<Pair<K, List<V>>> run(Stream<AJob<K,V>> jobs,
+            ExecutorService executor) {
+        ExecutorService aggregators = Executors.newFixedThreadPool(
+            partitions, r -> {
+                Thread t = new Thread(r, "pipeline-aggregator");
+                t.setDaemon(true);
+                return t;
+            });
+        CompletionService<Map<K, A>> groups =
+            new ExecutorCompletionService<>(aggregators);
+        for (int i = 0; i < partitions; i++) {
+            BlockingQueue<List<Pair<K,V>>> queue = queues.get(i);
+            groups.submit(() -> aggregate(queue));
+        }
+        aggregators.shutdown();
+
+        try {
+            if (executor == null) {
+                jobs.forEach(this::map);
+            } else {
+                List<Future<?>> mappers = jobs
+                    .map(x -> executor.submit(() -> map(x)))
+                    .collect(Collectors.toList());
+                /* Waiting for all of them, even after a failure */
+                for (Future<?> f : mappers) {
+                    try {
+                        f.get();
+                    } catch (ExecutionException e) {
+                        fail(e.getCause());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+        } catch (RuntimeException | Error e) {
+            fail(e);
+        }
+        if (failure == null) {
+            for (BlockingQueue<List<Pair<K,V>>> queue : queues) {
+                put(queue, end_of_stream);
+            }
+        }
+        if (failure != null) {
+            throw new RuntimeException("Pipeline failed!", failure);
+        }
+
+        return IntStream.range(0, partitions)
+            .mapToObj(x -> take(groups))
+            .flatMap(x -> x.entrySet().stream())
+            .map(x -> new Pair<>(x.getKey(), finisher.apply(x.getValue())));
+    }
+
+    /**
+     * Mapper stage: executes a job and sends its pairs in batches.
+     *
+     * @param job The job
+     */
+    private void map(AJob<K,V> job) {
+        if (failure != null) {
+            return;
+        }
+        Batches batches = new Batches();
+        try (Stream<Pair<K,V>> pairs = job.execute()) {
+            pairs.forEach(batches::add);
+        }
+        batches.flush();
+    }
+
+    /**
+     * Aggregator stage: folds the batches of a partition.
+     *
+     * @param queue The queue of the partition
+     * @return The aggregated values of the keys of the partition
+     */
+    private Map<K, A> aggregate(BlockingQueue<List<Pair<K,V>>> queue)
+            throws InterruptedException {
+        Map<K, A> map = new HashMap<>();
+        try {
+            while (true) {
+                List<Pair<K,V>> batch =
+                    queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (batch == null) {
+                    if (failure != null) {
+                        throw new RuntimeException("Pipeline failed!");
+                    }
+                    continue;
+                }
+                if (batch == end_of_stream) {
+                    return map;
+                }
+                for (Pair<K,V> p : batch) {
+                    A container = map.get(p.getKey());
+                    if (container == null) {
+                        container = supplier.get();
+                        map.put(p.getKey(), container);
+                    }
+                    accumulator.accept(container, p.getValue());
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            fail(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Records the first failure of a stage.
+     *
+     * @param e The failure
+     */
+    private synchronized void fail(Throwable e) {
+        if (failure == null) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Puts a batch in a queue, giving up if a stage failed.
+     *
+     * @param queue The queue
+     * @param batch The batch
+     */
+    private void put(BlockingQueue<List<Pair<K,V>>> queue,
+            List<Pair<K,V>> batch) {
+        try {
+            while (!queue.offer(batch, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (failure != null) {
+                    throw new RuntimeException("Pipeline failed!", failure);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while mapping!", e);
+        }
+    }
+
+    private static <T> T take(CompletionService<T> service) {
+        try {
+            return service.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while collecting!", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Aggregator failed!", e.getCause());
+        }
+    }
+
+    /**
+     * The per-partition batches being filled by a mapper. With a combiner,
+     * the values of a key are merged within the batch.
+     */
+    private class Batches {
+        private final List<List<Pair<K,V>>> lists = new ArrayList<>();
+        private final List<Map<K,V>> maps = new ArrayList<>();
+
+        Batches() {
+            for (int i = 0; i < partitions; i++) {
+                if (combiner == null) {
+                    lists.add(new ArrayList<>(batch_size));
+                } else {
+                    maps.add(new HashMap<>());
+                }
+            }
+        }
+
+        void add(Pair<K,V> p) {
+            int i = JobSchedulerContext.partitionOf(p.getKey(), partitions);
+            if (combiner == null) {
+                List<Pair<K,V>> batch = lists.get(i);
+                batch.add(p);
+                if (batch.size() >= batch_size) {
+                    send(i);
+                }
+            } else {
+                Map<K,V> batch = maps.get(i);
+                batch.merge(p.getKey(), p.getValue(), combiner);
+                if (batch.size() >= batch_size) {
+                    send(i);
+                }
+            }
+        }
+
+        void flush() {
+            for (int i = 0; i < partitions; i++) {
+                send(i);
+            }
+        }
+
+        private void send(int i) {
+            List<Pair<K,V>> batch;
+            if (combiner == null) {
+                batch = lists.get(i);
+                lists.set(i, new ArrayList<>(batch_size));
+            } else {
+                Map<K,V> map = maps.get(i);
+                batch = new ArrayList<>(map.size());
+                for (Map.Entry<K,V> e : map.entrySet()) {
+                    batch.add(new Pair<>(e.getKey(), e.getValue()));
+                }
+                map.clear();
+            }
+            if (!batch.isEmpty()) {
+                put(queues.get(i), batch);
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+* Reducer
+*
+* @description: Associative aggregation of the values of a key, given by an
+*               identity value and a combine function.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import java.util.function.BinaryOperator;
+
+
+public class Reducer<V> {
+    
+    /* The identity value, neutral for 'operator' */
+    private final V identity;
+    
+    /* The associative combine function */
+    private final BinaryOperator<V> operator;
+    
+    /**
+     * Constructor.
+     * 
+     * @param identity The identity value
+     * @param operator The associative combine function
+     */
+    public Reducer(V identity, BinaryOperator<V> operator) {
+        this.identity = identity;
+        this.operator = operator;
+    }
+    
+    public V getIdentity() {
+        return identity;
+    }
+    
+    public BinaryOperator<V> getOperator() {
+        return operator;
+    }
+    
+    /**
+     * Combines two values.
+     * 
+     * @param a The first value
+     * @param b The second value
+     * @return The combination of the two values
+     */
+    public V combine(V a, V b) {
+        return operator.apply(a, b);
+    }
+}
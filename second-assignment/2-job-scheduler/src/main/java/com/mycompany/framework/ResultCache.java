@@ -0,0 +1,370 @@
+/*
+* ResultCache
+*
+* @description: Persistent on-disk cache of the combined output of file jobs,
+*               so that re-runs only execute the jobs whose input changed.
+*               Entries of splits that no longer exist are removed by
+*               'prune'.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BinaryOperator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+public class ResultCache<K,V> {
+
+    /* The directory holding one entry per split */
+    private final Path directory;
+
+    /* Merges the values of a key emitted by a job */
+    private final BinaryOperator<V> combiner;
+
+    /* Statistics of the current process */
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /* The entries read or written by the current process */
+    private final Set<Path> used = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Constructor.
+     *
+     * @param directory The directory of the cache, created if missing
+     * @param combiner Merges the values of a key emitted by a job; it
+     *                 must be the combiner of the strategy
+     */
+    public ResultCache(Path directory, BinaryOperator<V> combiner) {
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.directory = directory;
+        this.combiner = combiner;
+    }
+
+    /**
+     * Wraps a job so that its combined output is read from the cache when
+     * its input is unchanged, and stored in the cache otherwise. The entry
+     * is named after the split and the serialized job, i.e. its class and
+     * its fields, so that jobs differing in either never share an entry.
+     * The cached job is serializable if the combiner is, and then it can
+     * run on a cluster worker sharing the directory of the cache.
+     *
+     * @param job The job to wrap
+     * @return The cached job
+     */
+    public AJob<K,V> wrap(SplittableFileJob<K,V> job) {
+        Path file = entryFile(job);
+        used.add(file);
+        return new CachedJob<>(this, job, file);
+    }
+
+    /**
+     * The hits of the jobs run by this process: those run by cluster
+     * workers are not counted, nor are their misses.
+     *
+     * @return The number of jobs whose output was read from the cache
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * The misses of the jobs run by this process, as in 'getHits'.
+     *
+     * @return The number of jobs that were run
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Removes the entries that were neither read nor written by this
+     * process, e.g. those of the old splits of a file whose size changed,
+     * and the temporary files left by interrupted writes. It is meant to
+     * be called after a run that wrapped the jobs of the whole input, so
+     * that the cache does not outgrow the input.
+     *
+     * @return The number of files removed
+     */
+    public int prune() {
+        int removed = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (!used.contains(file) && Files.deleteIfExists(file)) {
+                    removed++;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return removed;
+    }
+
+    /**
+     * Cached entry of a split: the fingerprint of the input and the
+     * combined output of the job.
+     */
+    private static class Entry<K,V> {
+        long size;
+        long mtime;
+        String hash;
+        HashMap<K,V> output;
+    }
+
+    /**
+     * Names the entry of a split after the digest of its path, its range
+     * and the serialized job.
+     *
+     * @param job The job of the split
+     * @return The file of the entry
+     */
+    private Path entryFile(SplittableFileJob<K,V> job) {
+        String id = job.path.toAbsolutePath() + "|" + job.start + "|"
+            + job.end + "|";
+        MessageDigest md = digest();
+        md.update(id.getBytes(StandardCharsets.UTF_8));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(job);
+        } catch (NotSerializableException e) {
+            throw new RuntimeException(
+                "Jobs must be serializable to be cached!", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        md.update(bytes.toByteArray());
+        return directory.resolve(hex(md.digest()));
+    }
+
+    /**
+     * Job reading its output from the cache when possible. It holds the
+     * name of its entry rather than the cache, so that it can be shipped
+     * to a cluster worker.
+     */
+    private static class CachedJob<K,V> extends AJob<K,V>
+            implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final SplittableFileJob<K,V> job;
+        private final BinaryOperator<V> combiner;
+
+        /* Path is not serializable, so the name of the entry is sent */
+        private final String entry_file;
+
+        /* The cache counting the hits and misses, null on a worker */
+        private final transient ResultCache<K,V> cache;
+
+        CachedJob(ResultCache<K,V> cache, SplittableFileJob<K,V> job,
+                Path entry_file) {
+            this.cache = cache;
+            this.job = job;
+            this.combiner = cache.combiner;
+            this.entry_file = entry_file.toString();
+        }
+
+        /**
+         * Looks the split up by path and range. The entry is valid if the
+         * size and the modification time of the file are unchanged or, if
+         * they changed, when the content hash of the split is the same. On
+         * a miss the split is hashed while the job reads it, so that it is
+         * read once, unless the content hash was needed to find the miss.
+         *
+         * @return The combined output of the job
+         */
+        @Override
+        public Stream<Pair<K,V>> execute() {
+            Path file = Path.of(entry_file);
+            long size;
+            long mtime;
+            try {
+                size = Files.size(job.path);
+                mtime = Files.getLastModifiedTime(job.path).toMillis();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            Entry<K,V> entry = read(file);
+            String hash = null;
+            if (entry != null
+                    && !(entry.size == size && entry.mtime == mtime)) {
+                hash = hash();
+                if (!hash.equals(entry.hash)) {
+                    entry = null;
+                }
+            }
+
+            if (entry == null) {
+                count(false);
+                entry = new Entry<>();
+                entry.hash = hash;
+                run(entry);
+            } else {
+                count(true);
+            }
+            if (hash != null || entry.size != size || entry.mtime != mtime) {
+                entry.size = size;
+                entry.mtime = mtime;
+                if (entry.hash == null) {
+                    /* The job did not read the split through the digest */
+                    entry.hash = hash();
+                }
+                write(file, entry);
+            }
+
+            return entry.output
+                .entrySet()
+                .stream()
+                .map(x -> new Pair<>(x.getKey(), x.getValue()));
+        }
+
+        /**
+         * Runs the job, storing its combined output in the entry. If the
+         * entry has no content hash yet, the split is hashed while the job
+         * reads it; the hash stays null if the job read it otherwise.
+         *
+         * @param entry The new entry of the split
+         */
+        private void run(Entry<K,V> entry) {
+            MessageDigest md = entry.hash == null ? digest() : null;
+            job.digest = md;
+            job.digested = false;
+            try (Stream<Pair<K,V>> pairs = job.execute()) {
+                entry.output = pairs.collect(Collectors.toMap(
+                    Pair::getKey, Pair::getValue, combiner, HashMap::new));
+                if (md != null && job.digested) {
+                    entry.hash = hex(md.digest());
+                }
+            } finally {
+                job.digest = null;
+            }
+        }
+
+        private void count(boolean hit) {
+            if (cache != null) {
+                (hit ? cache.hits : cache.misses).incrementAndGet();
+            }
+        }
+
+        @Override
+        public long bytesRead() {
+            return job.bytesRead();
+        }
+
+        @Override
+        public String toString() {
+            return job.toString();
+        }
+
+        /**
+         * Hashes the bytes read by the job, i.e. the lines of the split.
+         *
+         * @return The SHA-256 of the split, in hexadecimal
+         */
+        private String hash() {
+            MessageDigest md = digest();
+            ByteBuffer bytes = job.mapped();
+            md.update(bytes);
+            return hex(md.digest());
+        }
+    }
+
+    /**
+     * Reads an entry.
+     *
+     * @param file The file of the entry
+     * @return The entry, or null if it is missing or unreadable
+     */
+    @SuppressWarnings("unchecked")
+    private static <K,V> Entry<K,V> read(Path file) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (ObjectInputStream in = new ObjectInputStream(
+                new BufferedInputStream(Files.newInputStream(file)))) {
+            Entry<K,V> entry = new Entry<>();
+            entry.size = in.readLong();
+            entry.mtime = in.readLong();
+            entry.hash = in.readUTF();
+            entry.output = (HashMap<K,V>) in.readObject();
+            return entry;
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            Logger.getLogger(ResultCache.class.getName())
+                .log(Level.WARNING, "Discarding cache entry " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes an entry, atomically replacing the previous one.
+     *
+     * @param file The file of the entry
+     * @param entry The entry to write
+     */
+    private static <K,V> void write(Path file, Entry<K,V> entry) {
+        try {
+            Path tmp = Files.createTempFile(
+                file.getParent(), "entry-", ".tmp");
+            try (ObjectOutputStream out = new ObjectOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeLong(entry.size);
+                out.writeLong(entry.mtime);
+                out.writeUTF(entry.hash);
+                out.writeObject(entry.output);
+            } catch (NotSerializableException e) {
+                Files.deleteIfExists(tmp);
+                throw new RuntimeException(
+                    "Keys and values must be serializable to be cached!", e);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,230 @@
+/*
+* RunStats
+*
+* @description: Per-phase timings and counters of an instrumented run of
+*               the JobScheduler.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+
+public class RunStats {
+
+    /* Time attributed to each phase, in nanoseconds */
+    private long emit;
+    private long compute;
+    private long collect;
+    private long output;
+
+    /* Counters */
+    private long jobs;
+    private long records;
+    private long bytes;
+    private long keys;
+
+    /* The slowest job, to spot stragglers */
+    private String slowest_job;
+    private long slowest_time = -1;
+
+    /* Sum of the execution times of the jobs */
+    private long job_time;
+
+    /* When all jobs were done, and when the last partition was grouped */
+    private long computed;
+    private long grouped;
+
+    /**
+     * Wraps the jobs generated by 'emit', timing the generation only.
+     *
+     * @param jobs The jobs
+     * @return The same jobs
+     */
+    <T> Stream<T> timeEmit(Stream<T> jobs) {
+        Iterator<T> it = jobs.iterator();
+        Iterator<T> timed = new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                long t = System.nanoTime();
+                boolean next = it.hasNext();
+                addEmit(System.nanoTime() - t);
+                return next;
+            }
+
+            @Override
+            public T next() {
+                long t = System.nanoTime();
+                T job = it.next();
+                addEmit(System.nanoTime() - t);
+                return job;
+            }
+        };
+        return StreamSupport
+            .stream(Spliterators.spliteratorUnknownSize(
+                timed, Spliterator.ORDERED), false)
+            .onClose(jobs::close);
+    }
+
+    private synchronized void addEmit(long nanos) {
+        emit += nanos;
+    }
+
+    /**
+     * Records the execution of a job.
+     *
+     * @param job The name of the job
+     * @param nanos The execution time
+     * @param job_records The pairs emitted by the job
+     * @param job_bytes The bytes read by the job
+     */
+    synchronized void addJob(String job, long nanos, long job_records,
+            long job_bytes) {
+        jobs++;
+        records += job_records;
+        bytes += job_bytes;
+        job_time += nanos;
+        if (nanos > slowest_time) {
+            slowest_time = nanos;
+            slowest_job = job;
+        }
+    }
+
+    /**
+     * Records that all the jobs of a parallel run are done.
+     */
+    synchronized void markComputed() {
+        computed = System.nanoTime();
+    }
+
+    /**
+     * Records that a partition of a parallel run has been grouped.
+     */
+    synchronized void markGrouped() {
+        grouped = Math.max(grouped, System.nanoTime());
+    }
+
+    /**
+     * Counts a group passed to 'output'.
+     */
+    void addKey() {
+        keys++;
+    }
+
+    /**
+     * Counts the groups seen by an output stage, before it keeps the top K
+     * of them. Called by the partition tasks, concurrently.
+     *
+     * @param count The number of groups
+     */
+    synchronized void addKeys(long count) {
+        keys += count;
+    }
+
+    /**
+     * Attributes the elapsed time to the phases and emits the PhaseEvents.
+     * In a sequential run the phases are interleaved: compute is the time
+     * spent in the jobs, collect the rest of the grouping. In a parallel
+     * run compute lasts until all jobs are done, and collect until the
+     * last partition is grouped, overlapping with output.
+     *
+     * @param begin The start of the run
+     * @param collected When 'collect' (or 'shuffle') returned
+     * @param end The end of 'output'
+     * @param parallel True for a parallel run
+     */
+    synchronized void finish(long begin, long collected, long end,
+            boolean parallel) {
+        if (parallel) {
+            compute = computed - begin - emit;
+            collect = Math.max(grouped, collected) - computed;
+        } else {
+            compute = job_time;
+            collect = collected - begin - emit - job_time;
+        }
+        output = end - collected;
+
+        commit("emit", emit, jobs, 0);
+        commit("compute", compute, records, 0);
+        commit("collect", collect, records, keys);
+        commit("output", output, keys, keys);
+    }
+
+    private static void commit(String phase, long time, long records,
+            long keys) {
+        PhaseEvent event = new PhaseEvent();
+        if (event.shouldCommit()) {
+            event.phase = phase;
+            event.time = time;
+            event.records = records;
+            event.keys = keys;
+            event.commit();
+        }
+    }
+
+    public synchronized long getEmitTime(TimeUnit unit) {
+        return unit.convert(emit, TimeUnit.NANOSECONDS);
+    }
+
+    public synchronized long getComputeTime(TimeUnit unit) {
+        return unit.convert(compute, TimeUnit.NANOSECONDS);
+    }
+
+    public synchronized long getCollectTime(TimeUnit unit) {
+        return unit.convert(collect, TimeUnit.NANOSECONDS);
+    }
+
+    public synchronized long getOutputTime(TimeUnit unit) {
+        return unit.convert(output, TimeUnit.NANOSECONDS);
+    }
+
+    public synchronized long getJobs() {
+        return jobs;
+    }
+
+    public synchronized long getRecords() {
+        return records;
+    }
+
+    public synchronized long getBytesRead() {
+        return bytes;
+    }
+
+    public synchronized long getKeys() {
+        return keys;
+    }
+
+    /**
+     * Summary report of the run.
+     *
+     * @return One line for the counters, one per phase and one for the
+     *         slowest job
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(
+            "%d jobs, %d records, %d bytes read, %d distinct keys%n",
+            jobs, records, bytes, keys));
+        sb.append(String.format("  emit    %8d ms%n", ms(emit)));
+        sb.append(String.format("  compute %8d ms%n", ms(compute)));
+        sb.append(String.format("  collect %8d ms%n", ms(collect)));
+        sb.append(String.format("  output  %8d ms%n", ms(output)));
+        if (slowest_job != null) {
+            sb.append(String.format("  slowest job: %s (%d ms)%n",
+                slowest_job, ms(slowest_time)));
+        }
+        return sb.toString();
+    }
+
+    private static long ms(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
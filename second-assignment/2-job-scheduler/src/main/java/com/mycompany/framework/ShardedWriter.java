@@ -0,0 +1,230 @@
+/*
+* ShardedWriter
+*
+* @description: Writes a stream of items to one file, or to several shard
+*               files written in parallel, each with its own ByteWriter.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+
+public class ShardedWriter<T> {
+
+    /* The items handed to a shard at once */
+    private static final int CHUNK_SIZE = 4096;
+
+    /* The chunks a shard can lag behind */
+    private static final int QUEUE_CAPACITY = 4;
+
+    /* How long a blocked producer waits before checking for failures */
+    private static final long POLL_MILLIS = 100;
+
+    private final Path path;
+    private final int shards;
+
+    /* Appends an item to a writer */
+    private final BiConsumer<T, ByteWriter> format;
+
+    /* End of the chunks of a shard; compared by identity */
+    private final List<T> end_of_stream = new ArrayList<>();
+
+    /* Set when a shard or the producer fails, to stop all of them */
+    private volatile Throwable failure;
+
+    /**
+     * Constructor.
+     *
+     * @param path The output file; with several shards, the i-th one is
+     *             named as in 'shard'
+     * @param shards The number of files
+     * @param format Appends an item to a writer
+     */
+    public ShardedWriter(Path path, int shards,
+            BiConsumer<T, ByteWriter> format) {
+        if (shards < 1) {
+            throw new RuntimeException("Shards must be positive!");
+        }
+        this.path = path;
+        this.shards = shards;
+        this.format = format;
+    }
+
+    /**
+     * Names a shard by adding its index before the extension, e.g.
+     * 'out-3.txt'.
+     *
+     * @param path The output file
+     * @param i The index of the shard
+     * @param shards The number of shards
+     * @return The file of the shard, the output file if there is one shard
+     */
+    public static Path shard(Path path, int i, int shards) {
+        if (shards == 1) {
+            return path;
+        }
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String shard = dot < 0
+            ? name + "-" + i
+            : name.substring(0, dot) + "-" + i + name.substring(dot);
+        return path.resolveSibling(shard);
+    }
+
+    /**
+     * Writes the items. With several shards, the calling thread cuts the
+     * stream into chunks, handed round-robin to one thread per shard that
+     * formats and writes them; the order of the items is kept within each
+     * shard. If a shard or the stream fails, all the shards stop before
+     * their next chunk, dropping the ones queued, and the write fails once
+     * they are done.
+     *
+     * @param items The items to write
+     */
+    public void write(Stream<T> items) throws IOException {
+        if (shards == 1) {
+            try (ByteWriter out =
+                    new ByteWriter(path, ByteWriter.BUFFER_SIZE)) {
+                items.forEach(x -> format.accept(x, out));
+            }
+            return;
+        }
+
+        failure = null;
+        ExecutorService writers = Executors.newFixedThreadPool(shards);
+        List<BlockingQueue<List<T>>> queues = new ArrayList<>(shards);
+        List<Future<?>> futures = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            BlockingQueue<List<T>> queue =
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+            Path file = shard(path, i, shards);
+            queues.add(queue);
+            futures.add(writers.submit(() -> {
+                writeShard(file, queue);
+                return null;
+            }));
+        }
+        writers.shutdown();
+
+        try {
+            Iterator<T> it = items.iterator();
+            List<T> chunk = new ArrayList<>(CHUNK_SIZE);
+            int next = 0;
+            while (it.hasNext() && failure == null) {
+                chunk.add(it.next());
+                if (chunk.size() == CHUNK_SIZE || !it.hasNext()) {
+                    put(queues.get(next++ % shards), chunk);
+                    chunk = new ArrayList<>(CHUNK_SIZE);
+                }
+            }
+            /* The shards stop at their next chunk on a failure; otherwise,
+               they end once they have written all of theirs */
+            if (failure == null) {
+                for (BlockingQueue<List<T>> queue : queues) {
+                    put(queue, end_of_stream);
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            fail(e);
+        }
+
+        try {
+            for (Future<?> f : futures) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    fail(e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            fail(e);
+            writers.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while writing!", e);
+        }
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure != null) {
+            throw new RuntimeException("Shard writer failed!", failure);
+        }
+    }
+
+    /**
+     * Writes the chunks of a shard.
+     *
+     * @param file The file of the shard
+     * @param queue The chunks of the shard
+     */
+    private void writeShard(Path file, BlockingQueue<List<T>> queue)
+            throws IOException, InterruptedException {
+        try (ByteWriter out = new ByteWriter(file, ByteWriter.BUFFER_SIZE)) {
+            while (true) {
+                List<T> chunk =
+                    queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (failure != null) {
+                    throw new RuntimeException("Shard writer failed!");
+                }
+                if (chunk == null) {
+                    continue;
+                }
+                if (chunk == end_of_stream) {
+                    return;
+                }
+                for (T x : chunk) {
+                    format.accept(x, out);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Records a failure, keeping the first one.
+     *
+     * @param e The failure
+     */
+    private synchronized void fail(Throwable e) {
+        if (failure == null) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Hands a chunk to a shard, giving up if a shard failed.
+     *
+     * @param queue The queue of the shard
+     * @param chunk The chunk
+     */
+    private void put(BlockingQueue<List<T>> queue, List<T> chunk) {
+        try {
+            while (!queue.offer(chunk, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (failure != null) {
+                    throw new RuntimeException("Shard writer failed!", failure);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while writing!", e);
+        }
+    }
+}
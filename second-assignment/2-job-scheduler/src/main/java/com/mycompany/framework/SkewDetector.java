@@ -0,0 +1,119 @@
+/*
+* SkewDetector
+*
+* @description: Detects the hot keys of a shuffle by sampling the output of
+*               the jobs, and spreads each hot key over several partitions.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+
+class SkewDetector<K> {
+
+    /* One record out of SAMPLE_RATE is sampled */
+    private static final int SAMPLE_RATE = 16;
+
+    /* A key is hot past this fraction of the fair share of a partition */
+    private static final double HOT_FRACTION = 1.0 / 8;
+
+    private final int partitions;
+
+    /* The sampled records of each key, and the records seen */
+    private final Map<K, Long> sampled = new HashMap<>();
+    private long records = 0;
+
+    /* The number of partitions each hot key is split into */
+    private final Map<K, Integer> ways = new HashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param partitions The number of partitions of the shuffle
+     */
+    SkewDetector(int partitions) {
+        this.partitions = partitions;
+    }
+
+    /**
+     * Samples the output of a job as it is emitted, i.e. before it is
+     * combined: a combined output has a single pair per key, which would
+     * hide the hot keys. Each job task uses its own sampler.
+     */
+    final class Sampler implements Consumer<Pair<K, ?>> {
+        private final Map<K, Long> local = new HashMap<>();
+        private long seen = 0;
+
+        @Override
+        public void accept(Pair<K, ?> pair) {
+            if (seen++ % SAMPLE_RATE == 0) {
+                local.merge(pair.getKey(), 1L, Long::sum);
+            }
+        }
+
+        /**
+         * Adds the sample of the job to the detector, once the job is
+         * done. Called by the job tasks, concurrently.
+         */
+        void done() {
+            synchronized (SkewDetector.this) {
+                local.forEach((k, c) -> sampled.merge(k, c, Long::sum));
+                records += seen;
+            }
+        }
+    }
+
+    /**
+     * Creates the sampler of a job.
+     *
+     * @return The sampler
+     */
+    Sampler sampler() {
+        return new Sampler();
+    }
+
+    /**
+     * Finds the hot keys, once all the jobs are sampled. A key is hot if
+     * it would fill more than 'HOT_FRACTION' of the fair share of a
+     * partition; it is then split in as many ways as needed to get below
+     * that, at most one per partition. With a low fraction, a partition
+     * ending up with several large keys is unlikely.
+     *
+     * @return True if there is at least a hot key
+     */
+    synchronized boolean detect() {
+        double limit = (double) records / partitions * HOT_FRACTION;
+        sampled.forEach((k, c) -> {
+            int w = (int) Math.min(partitions,
+                Math.ceil(c * SAMPLE_RATE / limit));
+            if (w > 1) {
+                ways.put(k, w);
+            }
+        });
+        sampled.clear();
+        return !ways.isEmpty();
+    }
+
+    boolean isHot(K key) {
+        return ways.containsKey(key);
+    }
+
+    /**
+     * Computes the partition of a record. The records of a hot key go
+     * round-robin to consecutive partitions, starting from its own.
+     *
+     * @param key The key of the record
+     * @param i The index of the record in the output of its job
+     * @return The partition index, between 0 and partitions - 1
+     */
+    int partitionOf(K key, int i) {
+        int p = JobSchedulerContext.partitionOf(key, partitions);
+        Integer w = ways.get(key);
+        return w == null ? p : (p + i % w) % partitions;
+    }
+}
@@ -0,0 +1,318 @@
+/*
+* SpillingGrouper
+*
+* @description: Groups pairs by key within a memory budget, spilling sorted
+*               runs to temporary files and merging them back (external
+*               sort-merge).
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+
+class SpillingGrouper<K,V,A> {
+
+    /* The collector aggregating the values of a key */
+    private final Supplier<A> supplier;
+    private final BiConsumer<A, V> accumulator;
+    private final Function<A, List<V>> finisher;
+    private final Collector<V, A, List<V>> values;
+
+    /* Maximum number of buffered records before spilling */
+    private final long budget;
+
+    /* Whether every value is a buffered record, or only every key */
+    private final boolean countValues;
+
+    /* The in-memory buffer and the number of records it holds */
+    private final Map<K, A> buffer = new HashMap<>();
+    private long records = 0;
+
+    /* The sorted runs written so far */
+    private final List<Path> runs = new ArrayList<>();
+
+    /**
+     * Constructor.
+     *
+     * @param values The collector aggregating the values of a key
+     * @param budget The maximum number of records to keep in memory
+     * @param countValues True if each value takes memory, false if the
+     *                    values of a key are folded into a single one
+     */
+    SpillingGrouper(Collector<V, A, List<V>> values, long budget,
+            boolean countValues) {
+        this.values = values;
+        this.supplier = values.supplier();
+        this.accumulator = values.accumulator();
+        this.finisher = values.finisher();
+        this.budget = budget;
+        this.countValues = countValues;
+    }
+
+    /**
+     * Groups pairs by key, spilling to disk whenever the budget is reached.
+     * The runs are deleted when the groups are all read or the stream is
+     * closed, so the caller must close it if it may stop early; they are
+     * also deleted if grouping fails.
+     *
+     * @param pairs The pairs to group
+     * @return Groups of pairs with the same key
+     */
+    Stream<Pair<K, List<V>>> group(Stream<Pair<K,V>> pairs) {
+        try {
+            pairs.forEach(this::add);
+            if (!runs.isEmpty() && !buffer.isEmpty()) {
+                spill();
+            }
+        } catch (RuntimeException e) {
+            deleteRuns();
+            throw e;
+        }
+
+        /* Everything fit in memory */
+        if (runs.isEmpty()) {
+            return buffer
+                .entrySet()
+                .stream()
+                .map(x -> new Pair<>(x.getKey(), finisher.apply(x.getValue())));
+        }
+        Merger merger = new Merger();
+        return StreamSupport
+            .stream(Spliterators.spliteratorUnknownSize(
+                merger, Spliterator.NONNULL), false)
+            .onClose(merger::close);
+    }
+
+    /**
+     * Adds a pair to the buffer.
+     *
+     * @param p The pair to add
+     */
+    private void add(Pair<K,V> p) {
+        A container = buffer.get(p.getKey());
+        if (container == null) {
+            container = supplier.get();
+            buffer.put(p.getKey(), container);
+            records++;
+        } else if (countValues) {
+            records++;
+        }
+        accumulator.accept(container, p.getValue());
+
+        if (records >= budget) {
+            spill();
+        }
+    }
+
+    /**
+     * Writes the buffer, sorted by key hash, to a new run and clears it.
+     * Each record is (hash, key, values), followed by an end marker.
+     */
+    private void spill() {
+        List<Map.Entry<K, A>> entries = new ArrayList<>(buffer.entrySet());
+        entries.sort(Comparator.comparingInt(x -> x.getKey().hashCode()));
+
+        try {
+            Path run = Files.createTempFile("shuffle-", ".run");
+            runs.add(run);
+            try (ObjectOutputStream out = new ObjectOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(run)))) {
+                for (Map.Entry<K, A> e : entries) {
+                    out.writeBoolean(true);
+                    out.writeInt(e.getKey().hashCode());
+                    out.writeObject(e.getKey());
+                    out.writeObject(new ArrayList<>(
+                        finisher.apply(e.getValue())));
+                    /* Records are independent, no back-references needed */
+                    out.reset();
+                }
+                out.writeBoolean(false);
+            }
+        } catch (NotSerializableException e) {
+            throw new RuntimeException(
+                "Keys and values must be serializable to spill!", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.clear();
+        records = 0;
+    }
+
+    /**
+     * Deletes the files of the runs.
+     */
+    private void deleteRuns() {
+        for (Path path : runs) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                Logger.getLogger(SpillingGrouper.class.getName())
+                    .log(Level.WARNING, "Could not delete run " + path, e);
+            }
+        }
+        runs.clear();
+    }
+
+    /**
+     * Cursor over the records of a run.
+     */
+    private class Run {
+        private final ObjectInputStream in;
+        private int hash;
+        private K key;
+        private List<V> group;
+
+        Run(Path path) throws IOException {
+            in = new ObjectInputStream(
+                new BufferedInputStream(Files.newInputStream(path)));
+        }
+
+        /**
+         * Moves to the next record.
+         *
+         * @return False if the run is over
+         */
+        @SuppressWarnings("unchecked")
+        boolean advance() throws IOException {
+            try {
+                if (!in.readBoolean()) {
+                    in.close();
+                    return false;
+                }
+                hash = in.readInt();
+                key = (K) in.readObject();
+                group = (List<V>) in.readObject();
+                return true;
+            } catch (ClassNotFoundException | EOFException e) {
+                throw new IOException("Corrupted run!", e);
+            }
+        }
+    }
+
+    /**
+     * K-way merge of the runs. Records are ordered by key hash, so all the
+     * partial groups of a key are at the head of the runs at the same time,
+     * possibly together with other keys having the same hash.
+     */
+    private class Merger implements Iterator<Pair<K, List<V>>> {
+        private final PriorityQueue<Run> heads =
+            new PriorityQueue<>(Comparator.comparingInt((Run x) -> x.hash));
+        private final List<Run> open = new ArrayList<>();
+        private Iterator<Pair<K, List<V>>> pending =
+            new ArrayList<Pair<K, List<V>>>().iterator();
+
+        Merger() {
+            try {
+                for (Path path : runs) {
+                    Run run = new Run(path);
+                    open.add(run);
+                    if (run.advance()) {
+                        heads.add(run);
+                    }
+                }
+            } catch (IOException e) {
+                close();
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!pending.hasNext() && !heads.isEmpty()) {
+                pending = mergeNextHash();
+            }
+            if (!pending.hasNext()) {
+                close();
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public Pair<K, List<V>> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return pending.next();
+        }
+
+        /**
+         * Merges all the records having the smallest hash among the runs.
+         *
+         * @return The merged groups
+         */
+        private Iterator<Pair<K, List<V>>> mergeNextHash() {
+            int hash = heads.peek().hash;
+            Map<K, List<V>> parts = new LinkedHashMap<>();
+            try {
+                while (!heads.isEmpty() && heads.peek().hash == hash) {
+                    Run run = heads.poll();
+                    parts.merge(run.key, run.group, (a, b) -> {
+                        List<V> all = new ArrayList<>(a);
+                        all.addAll(b);
+                        return all;
+                    });
+                    if (run.advance()) {
+                        heads.add(run);
+                    }
+                }
+            } catch (IOException e) {
+                close();
+                throw new UncheckedIOException(e);
+            }
+
+            /* Re-aggregating the partial groups, e.g. folding them */
+            List<Pair<K, List<V>>> merged = new ArrayList<>(parts.size());
+            parts.forEach((k, v) -> merged.add(
+                new Pair<>(k, v.stream().collect(values))));
+            return merged.iterator();
+        }
+
+        /**
+         * Closes all runs and deletes their files.
+         */
+        void close() {
+            for (Run run : open) {
+                try {
+                    run.in.close();
+                } catch (IOException e) {
+                    /* Nothing to do, the file is deleted anyway */
+                }
+            }
+            open.clear();
+            heads.clear();
+            deleteRuns();
+        }
+    }
+}
@@ -0,0 +1,339 @@
+/*
+* SplittableFileJob
+*
+* @description: Job reading a byte range (split) of a file, so that a large
+*               file can be processed by several jobs at the same time.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+
+public abstract class SplittableFileJob<K,V> extends AJob<K,V>
+        implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /* Bytes mapped past the split to find the end of its last line */
+    private static final long LINE_SLACK = 64 << 10;
+
+    /* Smallest region worth mapping instead of reading */
+    private static final long MAP_THRESHOLD = 1 << 20;
+
+    /* The file to read; Path is not serializable, so 'file' is sent */
+    protected transient Path path;
+    private final String file;
+
+    /* The byte range of the split, end excluded */
+    protected final long start;
+    protected final long end;
+
+    /* Set by ResultCache on a miss, to hash the bytes of the split while
+       'lines' or 'mapped' read them; 'digested' tells whether they did */
+    transient MessageDigest digest;
+    transient boolean digested;
+
+    /**
+     * Constructor.
+     *
+     * @param path The file to read
+     * @param start The first byte of the split
+     * @param end The byte after the last one of the split
+     */
+    public SplittableFileJob(Path path, long start, long end) {
+        this.path = path;
+        this.file = path.toString();
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Restores the path of a job received by a cluster worker.
+     */
+    private void readObject(ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        path = Path.of(file);
+    }
+
+    /**
+     * The size of the split; the lines crossing its end are not counted.
+     *
+     * @return The number of bytes of the split
+     */
+    @Override
+    public long bytesRead() {
+        return end - start;
+    }
+
+    @Override
+    public String toString() {
+        return path + " [" + start + ", " + end + ")";
+    }
+
+    /**
+     * Cuts a file into byte ranges of (at most) 'split_size' bytes. The
+     * ranges are not aligned to lines: 'lines' takes care of that.
+     *
+     * @param path The file to split
+     * @param split_size The size of a split in bytes
+     * @return The (start, end) byte ranges, at least one
+     */
+    public static List<Pair<Long, Long>> splits(Path path, long split_size) {
+        if (split_size < 1) {
+            throw new RuntimeException("Split size must be positive!");
+        }
+        long size;
+        try {
+            size = Files.size(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        List<Pair<Long, Long>> ranges = new ArrayList<>();
+        long s = 0;
+        do {
+            long e = Math.min(size, s + split_size);
+            ranges.add(new Pair<>(s, e));
+            s = e;
+        } while (s < size);
+        return ranges;
+    }
+
+    /**
+     * Reads the lines of the split. A line belongs to the split in which it
+     * starts, so the first (partial) line is skipped unless the split is at
+     * the beginning of a line, and the last one is read past 'end'. This
+     * way no line, hence no word, is either lost or read twice.
+     *
+     * @return A stream of the lines of the split, decoded as UTF-8
+     */
+    protected Stream<String> lines() {
+        try {
+            LineIterator it = new LineIterator();
+            return StreamSupport
+                .stream(Spliterators.spliteratorUnknownSize(
+                    it, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(it::close);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Maps the split in memory, aligned to lines as in 'lines', without
+     * decoding it. The mapping is released by the garbage collector.
+     * Small splits are read into the heap instead, as mapping them costs
+     * more than copying them. The split plus its last line must not exceed
+     * 2 GiB.
+     *
+     * @return A read-only buffer over the bytes of the lines of the split
+     */
+    protected ByteBuffer mapped() {
+        try (FileChannel channel = FileChannel.open(
+                path, StandardOpenOption.READ)) {
+            long offset = Math.max(0, start - 1);
+            long available = Math.min(
+                channel.size() - offset, Integer.MAX_VALUE);
+            long window = Math.min(available, end - offset + LINE_SLACK);
+            if (window <= 0) {
+                /* Empty file, or split past its end */
+                return digested(ByteBuffer.allocate(0));
+            }
+
+            while (true) {
+                ByteBuffer map = load(channel, offset, window);
+
+                /* First byte of a line starting in the split, and past it */
+                int from = (int) (start - offset);
+                if (start > 0) {
+                    from = afterNewline(map, 0);
+                }
+                int to = (int) Math.min(window, end - offset);
+                if (to > from && map.get(to - 1) != '\n') {
+                    to = afterNewline(map, to);
+                }
+
+                /* The last line goes past the window: mapping more */
+                boolean truncated = to == window && to > 0
+                    && map.get(to - 1) != '\n' && window < available;
+                if (truncated || (from == window && window < available)) {
+                    window = Math.min(available, window * 2);
+                    continue;
+                }
+                if (to <= from) {
+                    return digested(ByteBuffer.allocate(0));
+                }
+                return digested(map.position(from).limit(to).slice());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Adds the bytes of the split to 'digest', if it is set.
+     *
+     * @param split The bytes of the lines of the split
+     * @return The same buffer, unread
+     */
+    private ByteBuffer digested(ByteBuffer split) {
+        if (digest != null) {
+            digest.update(split.duplicate());
+            digested = true;
+        }
+        return split;
+    }
+
+    /**
+     * Maps a region of a file, or reads it if it is small.
+     *
+     * @param channel The channel of the file
+     * @param offset The first byte of the region
+     * @param length The length of the region
+     * @return A buffer over the region
+     */
+    private static ByteBuffer load(FileChannel channel, long offset,
+            long length) throws IOException {
+        if (length >= MAP_THRESHOLD) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        while (buffer.hasRemaining()
+                && channel.read(buffer, offset + buffer.position()) != -1) {
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Finds the end of the line containing a position.
+     *
+     * @param buffer The buffer to scan
+     * @param i The position
+     * @return The position after the next newline, or the buffer limit
+     */
+    private static int afterNewline(ByteBuffer buffer, int i) {
+        int n = buffer.limit();
+        while (i < n && buffer.get(i) != '\n') {
+            i++;
+        }
+        return Math.min(n, i + 1);
+    }
+
+    /**
+     * Iterator over the lines starting in [start, end).
+     */
+    private class LineIterator implements Iterator<String> {
+        private final FileChannel channel;
+        private final InputStream in;
+        private long position;
+        private byte[] line = new byte[256];
+        private String next;
+
+        LineIterator() throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            position = Math.max(0, start - 1);
+            channel.position(position);
+            InputStream buffered =
+                new BufferedInputStream(Channels.newInputStream(channel));
+
+            /* Skipping the tail of the line started in the previous split */
+            if (start > 0) {
+                int b;
+                do {
+                    b = buffered.read();
+                    position++;
+                } while (b != -1 && b != '\n');
+            }
+            in = digest == null
+                ? buffered
+                : new DigestInputStream(buffered, digest);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && position < end) {
+                try {
+                    next = readLine();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            if (next == null && digest != null) {
+                /* The whole split went through the digest */
+                digested = true;
+            }
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String s = next;
+            next = null;
+            return s;
+        }
+
+        /**
+         * Reads a line, without its terminator.
+         *
+         * @return The line, or null at the end of the file
+         */
+        private String readLine() throws IOException {
+            int len = 0;
+            int b = in.read();
+            if (b == -1) {
+                return null;
+            }
+            while (b != -1 && b != '\n') {
+                if (len == line.length) {
+                    line = Arrays.copyOf(line, len * 2);
+                }
+                line[len++] = (byte) b;
+                b = in.read();
+            }
+            position += len + (b == -1 ? 0 : 1);
+            if (len > 0 && line[len - 1] == '\r') {
+                len--;
+            }
+            return new String(line, 0, len, StandardCharsets.UTF_8);
+        }
+
+        void close() {
+            try {
+                in.close();
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
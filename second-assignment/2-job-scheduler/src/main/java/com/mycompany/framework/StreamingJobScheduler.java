@@ -0,0 +1,353 @@
+/*
+* StreamingJobScheduler
+*
+* @description: Long-running JobScheduler watching a directory: files are
+*               computed as soon as they are created or modified, and their
+*               contribution is applied to a live aggregated state, whose
+*               changed groups are merged again at each refresh of the
+*               output.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+public class StreamingJobScheduler<K,V> implements AutoCloseable {
+
+    private static final Logger LOGGER =
+        Logger.getLogger(StreamingJobScheduler.class.getName());
+
+    /* The context computing the jobs, and whose strategy gets the output */
+    private final JobSchedulerContext<K,V> context;
+
+    /* The watched directory */
+    private final Path dir;
+
+    /* Creates the jobs of a file, none if the file must be ignored */
+    private final Function<Path, Stream<AJob<K,V>>> jobs;
+
+    /* For each key, the (grouped) contribution of each file */
+    private final Map<K, Map<Path, List<V>>> partials = new HashMap<>();
+
+    /* The keys each file contributes to */
+    private final Map<Path, List<K>> keys = new HashMap<>();
+
+    /* For each key, the contributions of all the files merged, as of the
+       last refresh, and the keys whose contributions changed since then */
+    private final Map<K, List<V>> merged = new HashMap<>();
+    private final Set<K> dirty = new HashSet<>();
+
+    /* The only thread passing the groups to the strategy, so that two
+       refreshes never write the output at the same time */
+    private final ScheduledExecutorService refresher =
+        Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "streaming-job-scheduler-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+
+    /* The refresh waiting for the refresher, which serves the requests
+       made in the meantime too */
+    private Future<?> pending;
+
+    /* The periodic refreshes, if any */
+    private ScheduledFuture<?> periodic;
+
+    private WatchService watcher;
+    private Thread loop;
+
+    /**
+     * Constructor.
+     *
+     * @param context The context computing the jobs; its strategy gets
+     *                the refreshed output, 'emit' is not used
+     * @param dir The directory to watch, recursively
+     * @param jobs Creates the jobs of a file, none if the file must be
+     *             ignored
+     */
+    public StreamingJobScheduler(JobSchedulerContext<K,V> context, Path dir,
+            Function<Path, Stream<AJob<K,V>>> jobs) {
+        if (!Files.isDirectory(dir)) {
+            throw new RuntimeException("Given path is not a directory!");
+        }
+        this.context = context;
+        this.dir = dir;
+        this.jobs = jobs;
+    }
+
+    /**
+     * Computes the files already in the directory, then starts watching it.
+     * Returns as soon as the initial files are computed.
+     */
+    public synchronized void start() {
+        if (watcher != null) {
+            throw new RuntimeException("Already started!");
+        }
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        /* Registering before scanning, so no file is missed in between */
+        scan(dir);
+
+        loop = new Thread(this::watch, "streaming-job-scheduler");
+        loop.setDaemon(true);
+        loop.start();
+    }
+
+    /**
+     * Refreshes the output periodically, until 'close'.
+     *
+     * @param period The time between two refreshes
+     */
+    public synchronized void setRefreshInterval(Duration period) {
+        if (periodic != null) {
+            periodic.cancel(false);
+        }
+        periodic = refresher.scheduleAtFixedRate(this::refresh,
+            period.toMillis(), period.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Passes the current groups to the 'output' of the strategy, from the
+     * refresher thread. The groups are the same 'collect' would produce on
+     * the content of the directory when the refresh starts. A request made
+     * while another one is still waiting is served by that one.
+     *
+     * @return The refresh, done once the output is written
+     */
+    public synchronized Future<?> refresh() {
+        if (pending == null) {
+            pending = refresher.submit(this::output);
+        }
+        return pending;
+    }
+
+    /**
+     * Stops watching the directory and refreshing the output.
+     */
+    @Override
+    public synchronized void close() {
+        refresher.shutdownNow();
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Body of a refresh, run by the refresher thread only.
+     */
+    private void output() {
+        List<Pair<K, List<V>>> groups;
+        synchronized (this) {
+            /* The requests made from now on need a new refresh */
+            pending = null;
+            groups = snapshot();
+        }
+        try {
+            context.getScheduling().output(groups.stream());
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Refresh failed", e);
+            throw e;
+        }
+    }
+
+    /**
+     * Merges again the contributions of the keys changed since the last
+     * snapshot.
+     *
+     * @return The current groups, whose lists must not be modified
+     */
+    private synchronized List<Pair<K, List<V>>> snapshot() {
+        for (K k : dirty) {
+            Map<Path, List<V>> files = partials.get(k);
+            if (files == null) {
+                merged.remove(k);
+            } else {
+                merged.put(k, files
+                    .values()
+                    .stream()
+                    .flatMap(List::stream)
+                    .collect(context.values()));
+            }
+        }
+        dirty.clear();
+
+        List<Pair<K, List<V>>> groups = new ArrayList<>(merged.size());
+        merged.forEach((k, v) -> groups.add(new Pair<>(k, v)));
+        return groups;
+    }
+
+    /**
+     * Computes a file and replaces its previous contribution.
+     *
+     * @param file The created or modified file
+     */
+    private void update(Path file) {
+        Map<K, List<V>> contribution;
+        try (Stream<AJob<K,V>> fileJobs = jobs.apply(file)) {
+            contribution = context
+                .collect(context.compute(fileJobs))
+                .collect(Collectors.toMap(Pair::getKey, Pair::getValue));
+        } catch (UncheckedIOException e) {
+            /* Deleted or not readable (yet): a later event will tell */
+            LOGGER.log(Level.WARNING, "Cannot compute " + file, e);
+            return;
+        }
+
+        synchronized (this) {
+            remove(file);
+            contribution.forEach((k, v) -> partials
+                .computeIfAbsent(k, x -> new HashMap<>())
+                .put(file, v));
+            keys.put(file, new ArrayList<>(contribution.keySet()));
+            dirty.addAll(contribution.keySet());
+        }
+    }
+
+    /**
+     * Removes the contribution of a file.
+     *
+     * @param file The file
+     */
+    private synchronized void remove(Path file) {
+        List<K> old = keys.remove(file);
+        if (old == null) {
+            return;
+        }
+        dirty.addAll(old);
+        for (K k : old) {
+            Map<Path, List<V>> files = partials.get(k);
+            files.remove(file);
+            if (files.isEmpty()) {
+                partials.remove(k);
+            }
+        }
+    }
+
+    /**
+     * Registers a directory (and its subdirectories) and computes its files.
+     *
+     * @param directory The directory
+     */
+    private void scan(Path directory) {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path p : (Iterable<Path>) paths::iterator) {
+                if (Files.isDirectory(p)) {
+                    p.register(watcher,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY,
+                        StandardWatchEventKinds.ENTRY_DELETE);
+                } else if (Files.isRegularFile(p)) {
+                    update(p);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Loop of the watching thread, applying the events of the directory.
+     */
+    private void watch() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watcher.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path parent = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                try {
+                    apply(parent, event);
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.SEVERE, "Cannot apply " + event.kind()
+                        + " " + event.context(), e);
+                }
+            }
+            if (!key.reset()) {
+                /* The directory is gone: its files are gone too */
+                removeUnder(parent);
+            }
+        }
+    }
+
+    /**
+     * Applies an event of a watched directory.
+     *
+     * @param parent The watched directory
+     * @param event The event
+     */
+    private void apply(Path parent, WatchEvent<?> event) {
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            /* Events were lost: starting over */
+            synchronized (this) {
+                dirty.addAll(partials.keySet());
+                partials.clear();
+                keys.clear();
+            }
+            scan(dir);
+            return;
+        }
+        Path path = parent.resolve((Path) event.context());
+        if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+            removeUnder(path);
+        } else if (Files.isDirectory(path)) {
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                scan(path);
+            }
+        } else if (Files.isRegularFile(path)) {
+            update(path);
+        }
+    }
+
+    /**
+     * Removes the contribution of a file, or of all the files of a
+     * directory.
+     *
+     * @param path The file or directory
+     */
+    private synchronized void removeUnder(Path path) {
+        for (Path file : new ArrayList<>(keys.keySet())) {
+            if (file.startsWith(path)) {
+                remove(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+* VirtualThreadExecutor
+*
+* @description: Executor running each task on its own virtual thread, with a
+*               limit on the number of tasks running at the same time.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+
+public class VirtualThreadExecutor extends AbstractExecutorService {
+
+    /* Factory of virtual threads */
+    private final ThreadFactory factory;
+
+    /* Permits for the running tasks */
+    private final Semaphore permits;
+
+    /* Number of started and not yet finished tasks */
+    private int active = 0;
+    private boolean shutdown = false;
+
+    /**
+     * Constructor.
+     *
+     * @param max_concurrency The maximum number of tasks running at once;
+     *                        the others wait, parked, on their own thread
+     */
+    public VirtualThreadExecutor(int max_concurrency) {
+        this(max_concurrency, virtualThreadFactory());
+    }
+
+    /**
+     * Constructor with the factory of the threads, so that the tests can
+     * reach the thread of a waiting task.
+     *
+     * @param max_concurrency The maximum number of tasks running at once
+     * @param factory The factory of the threads of the tasks
+     */
+    VirtualThreadExecutor(int max_concurrency, ThreadFactory factory) {
+        if (max_concurrency < 1) {
+            throw new RuntimeException("Concurrency must be positive!");
+        }
+        this.factory = factory;
+        this.permits = new Semaphore(max_concurrency);
+    }
+
+    /**
+     * Looks up 'Thread.ofVirtual().factory()', so that the framework can
+     * still be built for (and run on) Java 11 when this mode is not used.
+     * Java 19 and 20 have the method only as a preview, so they are
+     * rejected up front too.
+     *
+     * @return A factory of virtual threads
+     */
+    static ThreadFactory virtualThreadFactory() {
+        int version = Runtime.version().feature();
+        if (version < 21) {
+            throw new RuntimeException("Virtual threads require Java 21+, "
+                + "but this is Java " + version + "!");
+        }
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder")
+                .getMethod("factory")
+                .invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Virtual threads require Java 21+!", e);
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        synchronized (this) {
+            if (shutdown) {
+                throw new RejectedExecutionException("Executor is shut down!");
+            }
+            active++;
+        }
+        factory.newThread(() -> {
+            try {
+                acquire();
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                }
+            } finally {
+                done();
+            }
+        }).start();
+    }
+
+    /**
+     * Waits for a permit. If the thread is interrupted meanwhile, it keeps
+     * waiting and the task then runs with the interrupt status set, so
+     * that it can stop early: skipping it would leave the Future of
+     * 'submit' pending forever.
+     */
+    private void acquire() {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            permits.acquireUninterruptibly();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Records the end of a task.
+     */
+    private synchronized void done() {
+        active--;
+        if (active == 0) {
+            notifyAll();
+        }
+    }
+
+    @Override
+    public synchronized void shutdown() {
+        shutdown = true;
+    }
+
+    /**
+     * Same as 'shutdown': running tasks are not interrupted.
+     *
+     * @return An empty list, tasks are never queued
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown();
+        return Collections.emptyList();
+    }
+
+    @Override
+    public synchronized boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public synchronized boolean isTerminated() {
+        return shutdown && active == 0;
+    }
+
+    @Override
+    public synchronized boolean awaitTermination(long timeout, TimeUnit unit)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!isTerminated()) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, left);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+* AnagramIndexTest
+*
+* @description: Tests of the persistent index: lookups, reopening and the
+*               atomic replacement of the file.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.anagram;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.mycompany.framework.Pair;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+class AnagramIndexTest {
+
+    private static final List<String> WORDS = List.of(
+        "listen", "silent", "enlist", "tinsel", "silent",
+        "stone", "notes", "onset", "tones",
+        "conversation", "conservation",
+        "conservationist", "conversationist",
+        "alone");
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Groups words by key, as the output of AnagramIndexStrategy, with the
+     * repeated words.
+     */
+    private static Stream<Pair<AnagramKey, List<String>>> groups(
+            List<String> words) {
+        return words.stream()
+            .collect(Collectors.groupingBy(AnagramKey::of))
+            .entrySet().stream()
+            .map(e -> new Pair<>(e.getKey(), e.getValue()));
+    }
+
+    /**
+     * The expected classes, by the letters of their keys.
+     */
+    private static Map<String, List<String>> expected(List<String> words) {
+        Map<String, TreeSet<String>> classes = new TreeMap<>();
+        for (String w : words) {
+            classes.computeIfAbsent(AnagramKey.of(w).toString(),
+                x -> new TreeSet<>()).add(w);
+        }
+        Map<String, List<String>> expected = new TreeMap<>();
+        classes.forEach((k, v) -> expected.put(k, List.copyOf(v)));
+        return expected;
+    }
+
+    private static void assertIndex(List<String> words, AnagramIndex index) {
+        Map<String, List<String>> expected = expected(words);
+        assertEquals(expected.size(), index.size());
+        for (String w : words) {
+            List<String> anagrams = expected.get(AnagramKey.of(w).toString());
+            assertEquals(anagrams, index.lookup(w));
+            assertEquals(anagrams, index.lookup(w.toUpperCase()));
+        }
+        Map<String, List<String>> groups = new TreeMap<>();
+        index.groups().forEach(x -> groups.put(x.getKey().toString(),
+            x.getValue()));
+        assertEquals(expected, groups);
+        assertEquals(List.copyOf(expected.keySet()), index.groups()
+            .map(x -> x.getKey().toString())
+            .collect(Collectors.toList()));
+    }
+
+    @Test
+    void lookupHitsAndMisses() throws IOException {
+        Path path = dir.resolve("index.bin");
+        AnagramIndex.write(path, groups(WORDS));
+        AnagramIndex index = AnagramIndex.open(path);
+        assertIndex(WORDS, index);
+
+        /* Longer than 12 letters, so not packed */
+        assertEquals(List.of("conservationist", "conversationist"),
+            index.lookup("Conversationist"));
+        assertEquals(List.of("conservation", "conversation"),
+            index.lookup("voicesranton"));
+        for (String miss : List.of("lone", "stones", "nationalisms", "",
+                "listen!", "t1nsel", "café")) {
+            assertEquals(List.of(), index.lookup(miss), miss);
+        }
+    }
+
+    @Test
+    void emptyIndex() throws IOException {
+        Path path = dir.resolve("index.bin");
+        AnagramIndex.write(path, Stream.empty());
+        AnagramIndex index = AnagramIndex.open(path);
+        assertEquals(0, index.size());
+        assertEquals(List.of(), index.lookup("listen"));
+    }
+
+    @Test
+    void reopenedGivesSameAnswers() throws IOException {
+        Path path = dir.resolve("index.bin");
+        AnagramIndex.write(path, groups(WORDS));
+        AnagramIndex first = AnagramIndex.open(path);
+        AnagramIndex second = AnagramIndex.open(path);
+        assertIndex(WORDS, first);
+        assertIndex(WORDS, second);
+    }
+
+    @Test
+    void replacedAtomically() throws IOException {
+        Path path = dir.resolve("index.bin");
+        AnagramIndex.write(path, groups(WORDS));
+        AnagramIndex old = AnagramIndex.open(path);
+
+        /* The mapping of the old file is not touched by the new one */
+        List<String> words = List.of("angel", "glean", "angle", "alone");
+        AnagramIndex.write(path, groups(words));
+        assertIndex(WORDS, old);
+        assertIndex(words, AnagramIndex.open(path));
+
+        /* A failed write leaves the index as it was */
+        Stream<Pair<AnagramKey, List<String>>> failing = groups(WORDS)
+            .map(x -> {
+                throw new RuntimeException("Failed!");
+            });
+        assertThrows(RuntimeException.class,
+            () -> AnagramIndex.write(path, failing));
+        assertIndex(words, AnagramIndex.open(path));
+
+        /* No temporary file is left behind */
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(List.of(path), files.collect(Collectors.toList()));
+        }
+    }
+}
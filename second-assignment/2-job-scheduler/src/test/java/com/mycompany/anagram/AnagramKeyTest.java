@@ -0,0 +1,136 @@
+/*
+* AnagramKeyTest
+*
+* @description: Tests of the anagram keys: packing limit and fallback,
+*               ordering against the String one, equality and codec.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.anagram;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.mycompany.framework.ByteWriter;
+import com.mycompany.framework.Codec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+class AnagramKeyTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * The letters of a word in alphabetical order, as the old String keys.
+     */
+    private static String ciao(String word) {
+        char[] letters = word.toLowerCase().toCharArray();
+        Arrays.sort(letters);
+        return new String(letters);
+    }
+
+    /**
+     * Random lowercase words, of 1 to 20 letters over a small alphabet, so
+     * that keys often share a prefix.
+     */
+    private static List<String> randomWords(int count, long seed) {
+        Random random = new Random(seed);
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            char[] word = new char[1 + random.nextInt(20)];
+            for (int j = 0; j < word.length; j++) {
+                word[j] = (char) (random.nextBoolean()
+                    ? 'a' + random.nextInt(3)
+                    : 'x' + random.nextInt(3));
+            }
+            words.add(new String(word));
+        }
+        return words;
+    }
+
+    @Test
+    void packedUpToMaxLetters() {
+        assertEquals(12, AnagramKey.MAX_PACKED);
+        String word = "zyxwvutsrqpo";
+        AnagramKey packed = AnagramKey.of(word);
+        assertTrue(packed.isPacked());
+        assertEquals(ciao(word), packed.toString());
+        assertEquals(packed, AnagramKey.ofSignature(packed.getSignature()));
+
+        /* A 13th letter does not fit in the signature */
+        AnagramKey longer = AnagramKey.of(word + "z");
+        assertFalse(longer.isPacked());
+        assertEquals(ciao(word + "z"), longer.toString());
+        assertEquals(ciao("z".repeat(100)),
+            AnagramKey.of("z".repeat(100)).toString());
+    }
+
+    @Test
+    void sameOrderAsStrings() {
+        List<String> words = randomWords(500, 7);
+        words.addAll(List.of("a", "z", "zz", "aaaaaaaaaaaa", "aaaaaaaaaaaaa",
+            "zzzzzzzzzzzz", "zzzzzzzzzzzzz", "abcdefghijkl", "abcdefghijklm"));
+        for (String a : words) {
+            for (String b : words) {
+                assertEquals(
+                    Integer.signum(ciao(a).compareTo(ciao(b))),
+                    Integer.signum(AnagramKey.of(a).compareTo(
+                        AnagramKey.of(b))),
+                    a + " vs " + b);
+            }
+        }
+    }
+
+    @Test
+    void equalIffAnagrams() {
+        List<String> words = randomWords(300, 11);
+        words.addAll(List.of("Listen", "silent", "enlist", "tinsel",
+            "Conversation", "voicesranton", "conservation",
+            "conversational"));
+        for (String a : words) {
+            for (String b : words) {
+                AnagramKey x = AnagramKey.of(a);
+                AnagramKey y = AnagramKey.of(b);
+                if (ciao(a).equals(ciao(b))) {
+                    assertEquals(x, y);
+                    assertEquals(x.hashCode(), y.hashCode());
+                } else {
+                    assertNotEquals(x, y);
+                }
+            }
+        }
+    }
+
+    @Test
+    void codecRoundTrip() throws IOException {
+        Codec<AnagramKey> codec = AnagramKey.codec();
+        for (String word : randomWords(300, 13)) {
+            AnagramKey key = AnagramKey.of(word);
+            AnagramKey decoded =
+                codec.decode(ByteBuffer.wrap(codec.encode(key)));
+            assertEquals(key, decoded);
+            assertEquals(key.toString(), decoded.toString());
+            assertEquals(key.isPacked(), decoded.isPacked());
+            assertEquals(codec.hash(key), codec.hash(decoded));
+
+            Path file = dir.resolve("key");
+            try (ByteWriter out = new ByteWriter(file, 64)) {
+                key.writeTo(out);
+            }
+            assertEquals(key.toString(), Files.readString(file));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+* SubAnagramIndexTest
+*
+* @description: Tests of the sub-anagram queries against a brute-force
+*               filter of all the words.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.anagram;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.mycompany.framework.Pair;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+
+class SubAnagramIndexTest {
+
+    /**
+     * Random lowercase words of 1 to 15 letters over a small alphabet, so
+     * that many are sub-anagrams of each other.
+     */
+    private static List<String> randomWords(int count, long seed) {
+        Random random = new Random(seed);
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            char[] word = new char[1 + random.nextInt(15)];
+            for (int j = 0; j < word.length; j++) {
+                word[j] = (char) ('a' + random.nextInt(6));
+            }
+            words.add(new String(word));
+        }
+        return words;
+    }
+
+    private static Stream<Pair<AnagramKey, List<String>>> groups(
+            List<String> words) {
+        return words.stream()
+            .collect(Collectors.groupingBy(AnagramKey::of))
+            .entrySet().stream()
+            .map(e -> new Pair<>(e.getKey(), e.getValue()));
+    }
+
+    private static int[] counts(String word) {
+        int[] counts = new int[26];
+        for (char c : word.toLowerCase().toCharArray()) {
+            counts[c - 'a']++;
+        }
+        return counts;
+    }
+
+    /**
+     * The distinct words using each letter of 'word' at most as many times,
+     * sorted by key and then by word.
+     */
+    private static List<String> bruteForce(List<String> words, String word,
+            int min_len) {
+        int[] available = counts(word);
+        return words.stream()
+            .distinct()
+            .filter(w -> w.length() >= min_len)
+            .filter(w -> {
+                int[] needed = counts(w);
+                for (int c = 0; c < needed.length; c++) {
+                    if (needed[c] > available[c]) {
+                        return false;
+                    }
+                }
+                return true;
+            })
+            .sorted(Comparator.comparing((String w) -> AnagramKey.of(w)
+                .toString()).thenComparing(w -> w))
+            .collect(Collectors.toList());
+    }
+
+    @Test
+    void sameRacksAsBruteForce() {
+        List<String> words = randomWords(3000, 17);
+        SubAnagramIndex index = SubAnagramIndex.of(groups(words));
+        assertEquals(words.stream().map(x -> AnagramKey.of(x).toString())
+            .distinct().count(), index.size());
+        List<String> racks = new ArrayList<>(randomWords(200, 19));
+        racks.addAll(List.of("a", "abcdef", "ABCdef", "ffffffffffffffff",
+            "abcdefabcdefabcdef"));
+        for (String rack : racks) {
+            for (int min_len : new int[] {0, 1, 3, 7, 20}) {
+                assertEquals(bruteForce(words, rack, min_len),
+                    index.find(rack, min_len), rack + " " + min_len);
+            }
+        }
+    }
+
+    @Test
+    void invalidRacksFindNothing() {
+        SubAnagramIndex index = SubAnagramIndex.of(
+            groups(List.of("cafe", "face")));
+        assertEquals(List.of("cafe", "face"), index.find("FaceT", 0));
+        for (String rack : List.of("face!", "café", "fa ce", "")) {
+            assertEquals(List.of(), index.find(rack, 0), rack);
+        }
+    }
+
+    @Test
+    void duplicateKeysMerged() {
+        AnagramKey key = AnagramKey.of("listen");
+        SubAnagramIndex index = SubAnagramIndex.of(Stream.of(
+            new Pair<>(key, List.of("silent", "listen")),
+            new Pair<>(AnagramKey.of("list"), List.of("slit")),
+            new Pair<>(key, List.of("tinsel", "listen")),
+            new Pair<>(AnagramKey.of("list"), List.of("list"))));
+        assertEquals(2, index.size());
+        /* In the order of the keys, "eilnst" then "ilst" */
+        assertEquals(List.of("listen", "silent", "tinsel", "list", "slit"),
+            index.find("enlists", 4));
+        assertEquals(List.of("listen", "silent", "tinsel"),
+            index.find("enlists", 5));
+    }
+}
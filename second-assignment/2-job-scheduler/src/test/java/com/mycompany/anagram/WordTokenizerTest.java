@@ -0,0 +1,124 @@
+/*
+* WordTokenizerTest
+*
+* @description: Tests of the tokenizer against the regex pipeline it
+*               replaced, on lines and on raw UTF-8 bytes.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.anagram;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+
+class WordTokenizerTest {
+
+    private static final List<String> LINES = List.of(
+        "The quick Brown FOX jumps over the lazy dog",
+        "MiXeD CaSe WORDS lowercase UPPERCASE",
+        "digits 12345 abc123 letters123 seventeen",
+        "punctuation: hello, world! don't stop-gap (parens) quoted\"",
+        "tabs\tbetween\t\twords\tand\u000Bvertical\fformfeed",
+        "carriage\rreturn\r\nand\nnewlines\n",
+        "   leading and trailing runs     of   spaces   ",
+        "non-ASCII: café naïve straße Ångström words",
+        "greek αλφα cyrillic слово",
+        "no break emspace　ideographic spaces",
+        "edges: @bcde [bcde `bcde {bcde abcd\u007f",
+        "",
+        "        ",
+        "a ab abc abcd abcde abcdef");
+
+    /**
+     * The regex pipeline replaced by the tokenizer.
+     */
+    private static List<String> expected(List<String> lines,
+            int min_length) {
+        return lines.stream()
+            .flatMap(x -> Arrays.stream(x.split("\\s")))
+            .filter(word -> word.length() > min_length
+                && word.matches("^[a-zA-Z]+$"))
+            .map(word -> word.toLowerCase(Locale.ROOT))
+            .collect(Collectors.toList());
+    }
+
+    private static List<String> words(List<String> lines, int min_length) {
+        return WordTokenizer.words(lines.stream(), min_length)
+            .collect(Collectors.toList());
+    }
+
+    private static List<String> bytes(List<String> lines, int min_length) {
+        byte[] utf8 = String.join("\n", lines)
+            .getBytes(StandardCharsets.UTF_8);
+        return WordTokenizer.tokens(ByteBuffer.wrap(utf8), min_length,
+                (word, len) -> new String(word, 0, len))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Random lines over an alphabet of letters, digits, punctuation, ASCII
+     * separators and non-ASCII characters.
+     */
+    private static List<String> randomLines(int count, long seed) {
+        String alphabet = "abcdeXYZ019.,'-_@[`{ \t\r\n\u000B\f"
+            + "éß őс 中";
+        Random random = new Random(seed);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            StringBuilder sb = new StringBuilder();
+            int n = random.nextInt(80);
+            for (int j = 0; j < n; j++) {
+                /* Mostly letters, so that words pass the filters */
+                sb.append(random.nextInt(3) > 0
+                    ? alphabet.charAt(random.nextInt(8))
+                    : alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            lines.add(sb.toString());
+        }
+        return lines;
+    }
+
+    @Test
+    void sameWordsAsRegex() {
+        for (int min_length : new int[] {0, AnagramJob.LEN_THRESHOLD}) {
+            assertEquals(expected(LINES, min_length),
+                words(LINES, min_length));
+        }
+    }
+
+    @Test
+    void sameWordsAsRegexOnBytes() {
+        for (int min_length : new int[] {0, AnagramJob.LEN_THRESHOLD}) {
+            assertEquals(expected(LINES, min_length),
+                bytes(LINES, min_length));
+        }
+    }
+
+    @Test
+    void sameWordsAsRegexOnRandomLines() {
+        List<String> lines = randomLines(2000, 42);
+        for (int min_length : new int[] {0, AnagramJob.LEN_THRESHOLD}) {
+            List<String> expected = expected(lines, min_length);
+            assertEquals(expected, words(lines, min_length));
+            assertEquals(expected, bytes(lines, min_length));
+        }
+    }
+
+    @Test
+    void longWordsGrowTheBuffer() {
+        String word = "Ab".repeat(100);
+        List<String> lines = List.of(word + " " + word + "x");
+        assertEquals(expected(lines, 4), words(lines, 4));
+    }
+}
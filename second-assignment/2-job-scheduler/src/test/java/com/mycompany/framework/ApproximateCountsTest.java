@@ -0,0 +1,177 @@
+/*
+* ApproximateCountsTest
+*
+* @description: Tests of the approximate mode: heavy keys, their counts and
+*               distinct values, and the distinct keys, within the error
+*               bounds of the sketches.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+class ApproximateCountsTest {
+
+    private static final int KEYS = 5_000;
+    private static final int HEAVY_KEYS = 10;
+
+    /* Standard errors an estimate may be off by */
+    private static final double TOLERANCE = 4;
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Zipf-like counts, far enough apart among the heaviest keys for the
+     * error of the counts not to reorder them.
+     */
+    private static int count(int i) {
+        return 1 + 20_000 / (i + 1);
+    }
+
+    /**
+     * The number of distinct values of a key.
+     */
+    private static int distinct(int i) {
+        return Math.min(count(i), 100);
+    }
+
+    /**
+     * Adds the pairs of the keys; with 'parts' sketches, the j-th pair of
+     * a key goes to sketch j % parts, and the sketches are then merged.
+     */
+    private static ApproximateCounts<String> sketch(int parts) {
+        List<ApproximateCounts<String>> sketches = IntStream.range(0, parts)
+            .mapToObj(x -> new ApproximateCounts<String>(
+                HEAVY_KEYS, 0.001, 0.01, Codec.ofString()::hash))
+            .collect(Collectors.toList());
+        for (int i = 0; i < KEYS; i++) {
+            for (int j = 0; j < count(i); j++) {
+                sketches.get(j % parts).add("k" + i, 1,
+                    Hashing.mix(j % distinct(i)));
+            }
+        }
+        ApproximateCounts<String> total = sketches.get(0);
+        for (ApproximateCounts<String> other : sketches.subList(1, parts)) {
+            total.merge(other);
+        }
+        return total;
+    }
+
+    private static void assertWithin(long expected, long estimate,
+            double standard_error) {
+        assertTrue(Math.abs(estimate - expected)
+                <= TOLERANCE * standard_error * expected,
+            "Estimate " + estimate + " of " + expected);
+    }
+
+    private static void assertBounds(ApproximateCounts<String> counts) {
+        List<String> expected = IntStream.range(0, HEAVY_KEYS)
+            .mapToObj(i -> "k" + i)
+            .collect(Collectors.toList());
+        assertEquals(expected, counts.heavyKeys());
+
+        for (int i = 0; i < HEAVY_KEYS; i++) {
+            long estimate = counts.count("k" + i);
+            assertTrue(estimate >= count(i)
+                && estimate <= count(i) + counts.getCountError());
+            assertWithin(distinct(i), counts.distinctValues("k" + i),
+                counts.getValuesError());
+        }
+        assertWithin(KEYS, counts.distinctKeys(), counts.getKeysError());
+    }
+
+    @Test
+    void estimatesWithinBounds() {
+        assertBounds(sketch(1));
+    }
+
+    @Test
+    void mergedEstimatesWithinBounds() {
+        assertBounds(sketch(3));
+    }
+
+    @Test
+    void lateHeavyKeysReplaceLightest() {
+        ApproximateCounts<String> counts = new ApproximateCounts<>(3, 0.0001,
+            0.01, Codec.ofString()::hash);
+        /* Light keys fill and keep replacing the candidates, then heavier
+           keys come one at a time */
+        for (int j = 0; j < 1000; j++) {
+            counts.add("light" + j, 1, 0);
+        }
+        for (int i = 1; i <= 5; i++) {
+            for (int j = 0; j < 10 * i; j++) {
+                counts.add("heavy" + i, 1, 0);
+            }
+        }
+        assertEquals(List.of("heavy5", "heavy4", "heavy3"),
+            counts.heavyKeys());
+        assertEquals(50, counts.count("heavy5"));
+    }
+
+    @Test
+    void collidingHashCodesCountedApart() {
+        /* "Aa" and "BB" have the same hashCode */
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        ApproximateCounts<String> counts = new ApproximateCounts<>(2, 0.001,
+            0.01, Codec.ofString()::hash);
+        for (int j = 0; j < 300; j++) {
+            counts.add("Aa", 1, Hashing.mix(j));
+            counts.add("BB", 1, Hashing.mix(j % 10));
+        }
+        for (int j = 0; j < 100; j++) {
+            counts.add("k" + j, 1, 0);
+        }
+        assertEquals(Set.of("Aa", "BB"), Set.copyOf(counts.heavyKeys()));
+        assertEquals(300, counts.count("Aa"));
+        assertEquals(300, counts.count("BB"));
+        assertWithin(10, counts.distinctValues("BB"),
+            counts.getValuesError());
+        assertWithin(102, counts.distinctKeys(), counts.getKeysError());
+    }
+
+    @Test
+    void sameHeavyKeysAsCollect() throws IOException {
+        WordCountStrategy.writeCorpus(dir, 4);
+        WordCountStrategy strat = new WordCountStrategy(dir, 4096, true);
+        try (JobSchedulerContext<String, Integer> context =
+                new JobSchedulerContext<>(strat)) {
+            context.run();
+            Map<String, Integer> exact = strat.counts();
+
+            context.setApproximate(3, 0.001, 0.01, Codec.ofString(),
+                Codec.ofInteger());
+            for (int parallelism : new int[] {1, 4}) {
+                context.setParallelism(parallelism);
+                ApproximateCounts<String> counts =
+                    context.approximate(strat.emit());
+                assertEquals("the", counts.heavyKeys().get(0));
+                for (String key : counts.heavyKeys()) {
+                    long estimate = counts.count(key);
+                    assertTrue(estimate >= exact.get(key)
+                        && estimate <= exact.get(key)
+                            + counts.getCountError());
+                }
+                assertEquals(exact.values().stream()
+                    .mapToLong(Integer::longValue).sum(), counts.getTotal());
+                assertWithin(exact.size(), counts.distinctKeys(),
+                    counts.getKeysError());
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+* ClusterTest
+*
+* @description: Tests of the cluster mode: same groups as 'collect' when
+*               the jobs run in worker processes, also when they go through
+*               a cache.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.function.BinaryOperator;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+class ClusterTest {
+
+    private static final String WORKER_HEAP = "-Xmx64m";
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Word count whose jobs go through a cache.
+     */
+    private static class CachedStrategy extends WordCountStrategy {
+        private final ResultCache<String, Integer> cache;
+
+        CachedStrategy(Path dir, ResultCache<String, Integer> cache) {
+            super(dir, 4096, true);
+            this.cache = cache;
+        }
+
+        @Override
+        protected Stream<AJob<String, Integer>> emit() {
+            return super.emit().map(x -> cache.wrap(
+                (SplittableFileJob<String, Integer>) x));
+        }
+    }
+
+    /**
+     * Runs a word count in this process, then on two workers.
+     */
+    private void assertSameCounts(boolean reduced) throws IOException {
+        WordCountStrategy.writeCorpus(dir, 4);
+        WordCountStrategy strat = new WordCountStrategy(dir, 4096, reduced);
+        try (JobSchedulerContext<String, Integer> context =
+                new JobSchedulerContext<>(strat)) {
+            context.run();
+            Map<String, Integer> expected = strat.counts();
+
+            context.setCluster(2, WORKER_HEAP);
+            context.run();
+            assertEquals(expected, strat.counts());
+        }
+    }
+
+    @Test
+    void sameGroupsAsCollect() throws IOException {
+        assertSameCounts(false);
+    }
+
+    @Test
+    void sameReducedGroupsAsCollect() throws IOException {
+        /* The reducer is serializable, so the workers combine too */
+        assertSameCounts(true);
+    }
+
+    @Test
+    void cachedJobs() throws IOException {
+        Path docs = Files.createDirectory(dir.resolve("docs"));
+        WordCountStrategy.writeCorpus(docs, 4);
+        WordCountStrategy strat = new WordCountStrategy(docs, 4096, true);
+        try (JobSchedulerContext<String, Integer> context =
+                new JobSchedulerContext<>(strat)) {
+            context.run();
+        }
+
+        /* The workers write the entries, then this process reads them */
+        BinaryOperator<Integer> sum =
+            (BinaryOperator<Integer> & Serializable) Integer::sum;
+        ResultCache<String, Integer> cache =
+            new ResultCache<>(dir.resolve("cache"), sum);
+        CachedStrategy cached = new CachedStrategy(docs, cache);
+        try (JobSchedulerContext<String, Integer> context =
+                new JobSchedulerContext<>(cached)) {
+            context.setCluster(2, WORKER_HEAP);
+            context.run();
+            assertEquals(strat.counts(), cached.counts());
+        }
+        cache = new ResultCache<>(dir.resolve("cache"), sum);
+        cached = new CachedStrategy(docs, cache);
+        try (JobSchedulerContext<String, Integer> context =
+                new JobSchedulerContext<>(cached)) {
+            context.run();
+            assertEquals(strat.counts(), cached.counts());
+        }
+        assertEquals(0, cache.getMisses());
+        assertTrue(cache.getHits() > 0);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+* ColumnarTest
+*
+* @description: Tests of the columnar mode: same groups as 'collect', with
+*               and without a combiner, with counting, and when the last
+*               batch of a job is partial.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+class ColumnarTest {
+
+    /* Not a divisor of the records of the jobs, so their last batch is
+       partial */
+    private static final int CAPACITY = 7;
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Word count summing the counts in a CountTable.
+     */
+    private static class CountingStrategy extends WordCountStrategy {
+        CountingStrategy(Path dir) {
+            super(dir, 64, true);
+        }
+
+        @Override
+        protected Counting<String, Integer> counting() {
+            return new Counting<>(Integer::longValue, x -> (int) x, null);
+        }
+    }
+
+    private void writeFiles() throws IOException {
+        /* 800 words, a job with fewer words than a batch, an empty one */
+        Files.write(dir.resolve("a.txt"), Collections.nCopies(200, "a b c d"));
+        Files.write(dir.resolve("b.txt"), List.of("e f", "a", "", "g g g"));
+        Files.write(dir.resolve("c.txt"), List.of("h"));
+        Files.write(dir.resolve("d.txt"), List.of());
+    }
+
+    /**
+     * Runs a word count with 'collect', then in columnar mode,
+     * sequentially and on a pool.
+     */
+    private static void assertSameCounts(WordCountStrategy strat) {
+        try (JobSchedulerContext<String, Integer> context =
+                new JobSchedulerContext<>(strat)) {
+            context.run();
+            Map<String, Integer> expected = strat.counts();
+            assertEquals(802, expected.get("a") + expected.get("b")
+                + expected.get("c") + expected.get("d") + expected.get("h"));
+
+            context.setBatched(CAPACITY);
+            context.run();
+            assertEquals(expected, strat.counts());
+            context.setParallelism(4);
+            context.run();
+            assertEquals(expected, strat.counts());
+        }
+    }
+
+    @Test
+    void sameGroupsAsCollect() throws IOException {
+        writeFiles();
+        assertSameCounts(new WordCountStrategy(dir, 64, false));
+    }
+
+    @Test
+    void sameCombinedGroupsAsCollect() throws IOException {
+        writeFiles();
+        assertSameCounts(new WordCountStrategy(dir, 64, true));
+    }
+
+    @Test
+    void sameCountedGroupsAsCollect() throws IOException {
+        writeFiles();
+        assertSameCounts(new CountingStrategy(dir));
+    }
+
+    @Test
+    void partialLastBatch() {
+        PairBatch<String, Integer> batch = new PairBatch<>(CAPACITY);
+        int[] sizes = new int[3];
+        int[] batches = new int[1];
+        AJob<String, Integer> job = new AJob<String, Integer>() {
+            @Override
+            public Stream<Pair<String, Integer>> execute() {
+                return IntStream.range(0, 2 * CAPACITY + 3)
+                    .mapToObj(i -> new Pair<>("k" + i, i));
+            }
+        };
+        job.executeBatch(batch, x -> sizes[batches[0]++] = x.size());
+        assertEquals(3, batches[0]);
+        assertEquals(List.of(CAPACITY, CAPACITY, 3),
+            List.of(sizes[0], sizes[1], sizes[2]));
+        assertTrue(batch.isEmpty());
+    }
+}
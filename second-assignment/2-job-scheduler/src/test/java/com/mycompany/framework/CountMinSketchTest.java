@@ -0,0 +1,71 @@
+/*
+* CountMinSketchTest
+*
+* @description: Tests of the Count-Min sketch: estimates never below the
+*               true counts, and above them by at most the error but for a
+*               fraction 'delta' of the elements.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+
+class CountMinSketchTest {
+
+    private static final int ELEMENTS = 20_000;
+
+    /**
+     * Zipf-like counts: a few heavy elements, a long tail of light ones.
+     */
+    private static long count(int i) {
+        return 1 + 10_000 / (i + 1);
+    }
+
+    @Test
+    void estimatesWithinError() {
+        CountMinSketch sketch = new CountMinSketch(0.001, 0.01);
+        long total = 0;
+        for (int i = 0; i < ELEMENTS; i++) {
+            sketch.add(Hashing.mix(i), count(i));
+            total += count(i);
+        }
+        assertEquals(total, sketch.getTotal());
+
+        int exceeding = 0;
+        for (int i = 0; i < ELEMENTS; i++) {
+            long estimate = sketch.estimate(Hashing.mix(i));
+            assertTrue(estimate >= count(i), "Estimate below the count");
+            if (estimate > count(i) + sketch.getError()) {
+                exceeding++;
+            }
+        }
+        assertTrue(exceeding <= sketch.getDelta() * ELEMENTS,
+            exceeding + " estimates above the error");
+    }
+
+    @Test
+    void mergeAddsCounts() {
+        CountMinSketch all = new CountMinSketch(0.01, 0.05);
+        CountMinSketch even = new CountMinSketch(0.01, 0.05);
+        CountMinSketch odd = new CountMinSketch(0.01, 0.05);
+        for (int i = 0; i < ELEMENTS; i++) {
+            all.add(Hashing.mix(i), count(i));
+            (i % 2 == 0 ? even : odd).add(Hashing.mix(i), count(i));
+        }
+        even.merge(odd);
+        assertEquals(all.getTotal(), even.getTotal());
+        for (int i = 0; i < ELEMENTS; i++) {
+            assertEquals(all.estimate(Hashing.mix(i)),
+                even.estimate(Hashing.mix(i)));
+        }
+        assertThrows(RuntimeException.class,
+            () -> all.merge(new CountMinSketch(0.001, 0.05)));
+    }
+}
@@ -0,0 +1,138 @@
+/*
+* CountTableTest
+*
+* @description: Tests of the count tables against a HashMap merge: growth
+*               past the load factor, colliding keys and packed keys.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+
+class CountTableTest {
+
+    /**
+     * Packs the non-negative longs, so that both tables are used.
+     */
+    private static final Counting.KeyPacker<Long> PACKER =
+        new Counting.KeyPacker<Long>() {
+            @Override
+            public boolean canPack(Long key) {
+                return key >= 0;
+            }
+
+            @Override
+            public long pack(Long key) {
+                return key;
+            }
+
+            @Override
+            public Long unpack(long packed) {
+                return packed;
+            }
+        };
+
+    /**
+     * A key whose hashCode is the same for all the keys.
+     */
+    private static final class Colliding {
+        private final int id;
+
+        Colliding(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Colliding && ((Colliding) o).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return 42;
+        }
+    }
+
+    private static <K> Map<K, Long> counts(CountTable<K> table) {
+        Map<K, Long> counts = new HashMap<>();
+        table.groups(x -> x).forEach(x -> {
+            assertEquals(1, x.getValue().size());
+            assertEquals(null, counts.put(x.getKey(), x.getValue().get(0)));
+        });
+        assertEquals(counts.size(), table.size());
+        return counts;
+    }
+
+    @Test
+    void sameCountsAsHashMap() {
+        for (Counting.KeyPacker<Long> packer : Arrays.asList(PACKER, null)) {
+            CountTable<Long> table = new CountTable<>(packer);
+            Map<Long, Long> expected = new HashMap<>();
+            Random random = new Random(3);
+            for (int i = 0; i < 200_000; i++) {
+                /* Small, large, negative and zero keys, so that both
+                   tables grow well past their load factor */
+                long key = random.nextInt(50_000) - 10_000;
+                if (i % 7 == 0) {
+                    key <<= 40;
+                }
+                long count = 1 + random.nextInt(5);
+                table.add(key, count);
+                expected.merge(key, count, Long::sum);
+            }
+            assertEquals(expected, counts(table));
+        }
+    }
+
+    @Test
+    void collidingKeys() {
+        CountTable<Colliding> table = new CountTable<>(null);
+        Map<Colliding, Long> expected = new HashMap<>();
+        for (int i = 0; i < 3000; i++) {
+            Colliding key = new Colliding(i % 500);
+            table.add(key, i);
+            expected.merge(key, (long) i, Long::sum);
+        }
+        assertEquals(expected, counts(table));
+
+        /* "Aa" and "BB" have the same hashCode */
+        CountTable<String> strings = new CountTable<>(null);
+        strings.add("Aa", 1);
+        strings.add("BB", 2);
+        strings.add("Aa", 3);
+        assertEquals(Map.of("Aa", 4L, "BB", 2L), counts(strings));
+    }
+
+    @Test
+    void addAllSameAsHashMap() {
+        CountTable<Long> all = new CountTable<>(PACKER);
+        Map<Long, Long> expected = new HashMap<>();
+        for (int part = 0; part < 4; part++) {
+            CountTable<Long> table = new CountTable<>(PACKER);
+            for (long key = -1000; key < 1000 * (part + 1); key++) {
+                table.add(key, part + 1);
+                expected.merge(key, (long) part + 1, Long::sum);
+            }
+            all.addAll(table);
+        }
+        assertEquals(expected, counts(all));
+    }
+
+    @Test
+    void doublingPastMaxCapacityFails() {
+        assertEquals(CountTable.MAX_CAPACITY,
+            CountTable.doubled(CountTable.MAX_CAPACITY / 2));
+        assertThrows(RuntimeException.class,
+            () -> CountTable.doubled(CountTable.MAX_CAPACITY));
+    }
+}
@@ -0,0 +1,57 @@
+/*
+* HyperLogLogTest
+*
+* @description: Tests of the HyperLogLog: estimates within a few standard
+*               errors of the number of distinct elements.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+
+class HyperLogLogTest {
+
+    /* Standard errors an estimate may be off by */
+    private static final double TOLERANCE = 4;
+
+    private static void assertEstimate(long expected, HyperLogLog sketch) {
+        double error = TOLERANCE * sketch.getStandardError() * expected;
+        assertTrue(Math.abs(sketch.estimate() - expected) <= Math.max(error, 1),
+            "Estimate " + sketch.estimate() + " of " + expected);
+    }
+
+    @Test
+    void estimatesWithinStandardErrors() {
+        for (int precision : new int[] {6, 10, 14}) {
+            for (int n : new int[] {0, 10, 1_000, 100_000}) {
+                HyperLogLog sketch = new HyperLogLog(precision);
+                /* Every element twice: duplicates do not count */
+                for (int round = 0; round < 2; round++) {
+                    for (int i = 0; i < n; i++) {
+                        sketch.add(Hashing.mix(i));
+                    }
+                }
+                assertEstimate(n, sketch);
+            }
+        }
+    }
+
+    @Test
+    void mergeEstimatesUnion() {
+        HyperLogLog low = new HyperLogLog(14);
+        HyperLogLog high = new HyperLogLog(14);
+        for (int i = 0; i < 60_000; i++) {
+            low.add(Hashing.mix(i));
+            high.add(Hashing.mix(i + 40_000));
+        }
+        low.merge(high);
+        assertEstimate(100_000, low);
+        assertEquals(1 << 14, low.bytes());
+    }
+}
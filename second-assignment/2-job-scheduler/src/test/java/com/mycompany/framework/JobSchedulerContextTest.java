@@ -0,0 +1,135 @@
+/*
+* JobSchedulerContextTest
+*
+* @description: Tests of the configuration of the modes of execution.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+class JobSchedulerContextTest {
+
+    @TempDir
+    Path dir;
+
+    private static JobSchedulerContext<String, Integer> context() {
+        return new JobSchedulerContext<>(
+            new WordCountStrategy(Path.of("."), 1024, true));
+    }
+
+    @Test
+    void conflictingModes() {
+        JobSchedulerContext<String, Integer> context = context();
+        context.setPipelined(16, 4);
+        assertThrows(RuntimeException.class, () -> context.setBatched(16));
+        assertThrows(RuntimeException.class, () -> context.setCluster(2));
+        assertThrows(RuntimeException.class,
+            () -> context.setInstrumented(true));
+        assertThrows(RuntimeException.class,
+            () -> context.setApproximate(10, 0.01, 0.01));
+
+        /* Once disabled, another mode can be chosen */
+        context.setPipelined(0, 0);
+        context.setInstrumented(true);
+        assertThrows(RuntimeException.class, () -> context.setBatched(16));
+    }
+
+    @Test
+    void ignoredSettings() {
+        try (JobSchedulerContext<String, Integer> context = context()) {
+            /* Only 'shuffle' splits the hot keys */
+            assertThrows(RuntimeException.class,
+                () -> context.setSkewSplitting(true));
+            context.setParallelism(2);
+            context.setSkewSplitting(true);
+            assertThrows(RuntimeException.class,
+                () -> context.setParallelism(1));
+            assertThrows(RuntimeException.class,
+                () -> context.setExecutor(null));
+            assertThrows(RuntimeException.class,
+                () -> context.setPipelined(16, 4));
+            context.setInstrumented(true);
+            context.setInstrumented(false);
+            context.setSkewSplitting(false);
+            context.setParallelism(1);
+
+            /* Spilling and off-heap grouping apply to 'collect' too */
+            context.setSpillThreshold(100);
+            assertThrows(RuntimeException.class, () -> context.setBatched(16));
+            context.setSpillThreshold(0);
+            context.setBatched(16);
+            assertThrows(RuntimeException.class,
+                () -> context.setSpillThreshold(100));
+            assertThrows(RuntimeException.class,
+                () -> context.setOffHeap(Codec.ofString(), Codec.ofInteger(),
+                    1 << 16));
+            context.setBatched(0);
+            context.setOffHeap(Codec.ofString(), Codec.ofInteger(), 1 << 16);
+            assertThrows(RuntimeException.class,
+                () -> context.setApproximate(10, 0.01, 0.01));
+            context.setOffHeap(null, null, 0);
+
+            /* The approximate output is neither sorted nor limited */
+            context.setTopK(5);
+            assertThrows(RuntimeException.class,
+                () -> context.setApproximate(10, 0.01, 0.01));
+            context.setTopK(0);
+            context.setApproximate(10, 0.01, 0.01);
+            assertThrows(RuntimeException.class, () -> context.setTopK(5));
+            assertThrows(RuntimeException.class,
+                () -> context.setSortedOutput(true));
+            context.setApproximate(0, 0, 0);
+            context.setSortedOutput(true);
+        }
+    }
+
+    @Test
+    void statsOfInstrumentedRunsOnly() throws IOException {
+        Files.write(dir.resolve("a.txt"), List.of("a b", "b c c"));
+        WordCountStrategy strat = new WordCountStrategy(dir, 4, true);
+        JobSchedulerContext<String, Integer> context =
+            new JobSchedulerContext<>(strat);
+        context.setInstrumented(true);
+        assertNull(context.getStats());
+
+        /* Outside of 'run', nothing is timed */
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            context.setExecutor(executor);
+            assertEquals(3, context.shuffle(strat.emit())
+                .collect(Collectors.toList()).size());
+            assertNull(context.getStats());
+
+            context.run();
+        } finally {
+            executor.shutdown();
+        }
+        RunStats stats = context.getStats();
+        assertEquals(3, stats.getKeys());
+        assertEquals(strat.emit().count(), stats.getJobs());
+
+        /* A later run outside of instrumented mode leaves them alone */
+        context.setInstrumented(false);
+        context.setExecutor(null);
+        context.run();
+        assertSame(stats, context.getStats());
+        assertEquals(strat.emit().count(), stats.getJobs());
+    }
+}
@@ -0,0 +1,92 @@
+/*
+* OffHeapGrouperTest
+*
+* @description: Tests of the off-heap mode: codecs decoding what they
+*               encode, and same groups as 'collect' over many arenas.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+class OffHeapGrouperTest {
+
+    /* The smallest arenas, so that a small corpus fills many of them */
+    private static final int ARENA_SIZE = 64;
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Encodes a value, then decodes it from the middle of a larger buffer,
+     * as the grouper does.
+     */
+    private static <T> T roundTrip(Codec<T> codec, T value) {
+        byte[] bytes = codec.encode(value);
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 8);
+        buffer.position(3);
+        buffer.put(bytes);
+        buffer.flip().position(3);
+        return codec.decode(buffer);
+    }
+
+    @Test
+    void codecsRoundTrip() {
+        for (int x : new int[] {0, 1, -1, Integer.MIN_VALUE, 1 << 30}) {
+            assertEquals(x, roundTrip(Codec.ofInteger(), x));
+        }
+        for (long x : new long[] {0, -7, Long.MAX_VALUE, 1L << 40}) {
+            assertEquals(x, roundTrip(Codec.ofLong(), x));
+        }
+        for (String x : List.of("", "a", "città", "日本語", "x".repeat(300))) {
+            assertEquals(x, roundTrip(Codec.ofString(), x));
+        }
+    }
+
+    /**
+     * Runs a word count on the heap, then off-heap, sequentially and on a
+     * pool.
+     */
+    private void assertSameCounts(boolean reduced) throws IOException {
+        WordCountStrategy.writeCorpus(dir, 4);
+        Files.write(dir.resolve("unicode.txt"),
+            List.of("città perché città", "日本語 perché"));
+        WordCountStrategy strat = new WordCountStrategy(dir, 4096, reduced);
+        try (JobSchedulerContext<String, Integer> context =
+                new JobSchedulerContext<>(strat)) {
+            context.run();
+            Map<String, Integer> expected = strat.counts();
+
+            context.setOffHeap(
+                Codec.ofString(), Codec.ofInteger(), ARENA_SIZE);
+            context.run();
+            assertEquals(expected, strat.counts());
+
+            context.setParallelism(4);
+            context.run();
+            assertEquals(expected, strat.counts());
+        }
+    }
+
+    @Test
+    void sameGroupsAsCollect() throws IOException {
+        assertSameCounts(false);
+    }
+
+    @Test
+    void sameReducedGroupsAsCollect() throws IOException {
+        assertSameCounts(true);
+    }
+}
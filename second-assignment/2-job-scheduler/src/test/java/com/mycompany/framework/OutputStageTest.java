@@ -0,0 +1,127 @@
+/*
+* OutputStageTest
+*
+* @description: Tests of the output stage: the top K groups and the sorted
+*               output follow the ranking of the strategy, sequentially and
+*               in the partitioned modes, and the keys are counted before
+*               the top K are selected.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+class OutputStageTest {
+
+    private static final int K = 10;
+
+    @TempDir
+    Path dir;
+
+    /**
+     * The words of a count, in the order of the ranking of the strategy.
+     */
+    private static List<String> ranked(Map<String, Integer> counts) {
+        return counts.entrySet()
+            .stream()
+            .sorted(Comparator
+                .comparingInt((Map.Entry<String, Integer> x) -> -x.getValue())
+                .thenComparing(Map.Entry::getKey))
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Checks the output stage in a mode: top K, sorted output, and both
+     * with the keys counted by an instrumented run.
+     */
+    private static void assertStage(
+            JobSchedulerContext<String, Integer> context,
+            WordCountStrategy strat, Map<String, Integer> expected) {
+        List<String> ranked = ranked(expected);
+
+        context.setTopK(K);
+        context.run();
+        assertEquals(ranked.subList(0, K), strat.keys());
+        strat.counts().forEach((k, v) -> assertEquals(expected.get(k), v));
+
+        context.setTopK(ranked.size() + 5);
+        context.run();
+        assertEquals(ranked, strat.keys());
+
+        context.setTopK(0);
+        context.setSortedOutput(true);
+        context.run();
+        assertEquals(ranked, strat.keys());
+        assertEquals(expected, strat.counts());
+
+        context.setInstrumented(true);
+        context.run();
+        assertEquals(ranked, strat.keys());
+        assertEquals(ranked.size(), context.getStats().getKeys());
+
+        context.setSortedOutput(false);
+        context.setTopK(K);
+        context.run();
+        assertEquals(ranked.subList(0, K), strat.keys());
+        assertEquals(ranked.size(), context.getStats().getKeys());
+
+        context.setTopK(0);
+        context.setInstrumented(false);
+    }
+
+    private void assertStages(boolean reduced,
+            Consumer<JobSchedulerContext<String, Integer>> mode)
+            throws IOException {
+        WordCountStrategy.writeCorpus(dir, 4);
+        WordCountStrategy strat = new WordCountStrategy(dir, 4096, reduced);
+        try (JobSchedulerContext<String, Integer> context =
+                new JobSchedulerContext<>(strat)) {
+            context.run();
+            Map<String, Integer> expected = strat.counts();
+            mode.accept(context);
+            assertStage(context, strat, expected);
+        }
+    }
+
+    @Test
+    void sequential() throws IOException {
+        assertStages(false, x -> { });
+        assertStages(true, x -> { });
+    }
+
+    @Test
+    void shuffle() throws IOException {
+        assertStages(false, x -> x.setParallelism(4));
+        assertStages(true, x -> {
+            x.setParallelism(4);
+            x.setPartitions(7);
+        });
+    }
+
+    @Test
+    void shuffleSkewed() throws IOException {
+        /* "the" is hot in the corpus, so its partial groups are merged */
+        assertStages(false, x -> {
+            x.setParallelism(4);
+            x.setSkewSplitting(true);
+        });
+        assertStages(true, x -> {
+            x.setParallelism(4);
+            x.setSkewSplitting(true);
+        });
+    }
+}
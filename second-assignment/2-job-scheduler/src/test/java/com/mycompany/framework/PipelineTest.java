@@ -0,0 +1,92 @@
+/*
+* PipelineTest
+*
+* @description: Tests of the pipelined mode: same groups as 'collect', and
+*               no stage left blocked when a job fails.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+class PipelineTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Job emitting many distinct keys, failing at the end if asked to.
+     */
+    private static AJob<String, Integer> job(int id, boolean fails) {
+        return new AJob<String, Integer>() {
+            @Override
+            public Stream<Pair<String, Integer>> execute() {
+                return IntStream.range(0, 10_000)
+                    .mapToObj(i -> {
+                        if (fails && i == 100) {
+                            throw new IllegalStateException("Failing job");
+                        }
+                        return new Pair<>(id + "-" + i, 1);
+                    });
+            }
+        };
+    }
+
+    @Test
+    void sameGroupsAsCollect() throws IOException {
+        Files.write(dir.resolve("a.txt"), Collections.nCopies(200, "a b c d"));
+        Files.write(dir.resolve("b.txt"), List.of("e f", "a", "", "g g g"));
+        WordCountStrategy strat = new WordCountStrategy(dir, 64, false);
+        JobSchedulerContext<String, Integer> context =
+            new JobSchedulerContext<>(strat);
+        context.run();
+        List<Object> expected = List.of(strat.counts());
+
+        context.setPipelined(8, 2);
+        context.setPartitions(3);
+        context.run();
+        assertEquals(expected, List.of(strat.counts()));
+        context.setParallelism(4);
+        context.run();
+        assertEquals(expected, List.of(strat.counts()));
+        context.close();
+    }
+
+    @Test
+    void failingJobStopsAllStages() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<AJob<String, Integer>> jobs = new ArrayList<>();
+        jobs.add(job(0, true));
+        for (int i = 1; i < 16; i++) {
+            jobs.add(job(i, false));
+        }
+        Pipeline<String, Integer, Object> pipeline = new Pipeline<>(
+            new JobSchedulerContext<>(
+                new WordCountStrategy(dir, 64, false)).values(),
+            null, 2, 1, 1);
+        assertThrows(RuntimeException.class,
+            () -> pipeline.run(jobs.stream(), executor));
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS),
+            "Mappers left blocked");
+    }
+}
@@ -0,0 +1,239 @@
+/*
+* ResultCacheTest
+*
+* @description: Tests of the cache of the output of the jobs: entries kept
+*               apart by job class and configuration, a single read of the
+*               split on a miss, and cached jobs shipped to a worker.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+class ResultCacheTest {
+
+    /* Serializable, so that the cached jobs are */
+    private static final BinaryOperator<Integer> SUM =
+        (BinaryOperator<Integer> & Serializable) Integer::sum;
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Word count keeping the words of at least 'min_len' characters.
+     */
+    private static class MinLengthJob
+            extends SplittableFileJob<String, Integer> {
+        private static final long serialVersionUID = 1L;
+
+        private final int min_len;
+
+        MinLengthJob(Path path, long start, long end, int min_len) {
+            super(path, start, end);
+            this.min_len = min_len;
+        }
+
+        @Override
+        public Stream<Pair<String, Integer>> execute() {
+            return lines()
+                .flatMap(x -> Arrays.stream(x.split(" ")))
+                .filter(x -> x.length() >= min_len)
+                .map(x -> new Pair<>(x, 1));
+        }
+    }
+
+    /**
+     * Word count job counting the reads of its split, by 'lines' and by
+     * 'mapped'. The counters are transient, so they are not part of the
+     * key of the entry.
+     */
+    private static class ReadCountingJob extends WordCountJob {
+        private static final long serialVersionUID = 1L;
+
+        private final transient AtomicInteger lines;
+        private final transient AtomicInteger mapped;
+
+        ReadCountingJob(Path path, Pair<Long, Long> range,
+                AtomicInteger lines, AtomicInteger mapped) {
+            super(path, range.getKey(), range.getValue());
+            this.lines = lines;
+            this.mapped = mapped;
+        }
+
+        @Override
+        protected Stream<String> lines() {
+            lines.incrementAndGet();
+            return super.lines();
+        }
+
+        @Override
+        protected ByteBuffer mapped() {
+            mapped.incrementAndGet();
+            return super.mapped();
+        }
+    }
+
+    private static Map<String, Integer> run(ResultCache<String, Integer> cache,
+            Path path, long split_size) {
+        return run(cache, path, split_size,
+            r -> new WordCountJob(path, r.getKey(), r.getValue()));
+    }
+
+    /**
+     * Runs the cached jobs of the splits of a file.
+     *
+     * @param job Creates the job of a (start, end) range
+     */
+    private static Map<String, Integer> run(ResultCache<String, Integer> cache,
+            Path path, long split_size,
+            Function<Pair<Long, Long>, SplittableFileJob<String, Integer>>
+                job) {
+        return SplittableFileJob.splits(path, split_size)
+            .stream()
+            .map(r -> cache.wrap(job.apply(r)))
+            .flatMap(AJob::execute)
+            .collect(Collectors.toMap(
+                Pair::getKey, Pair::getValue, Integer::sum));
+    }
+
+    private static long entries(Path cache_dir) throws IOException {
+        try (Stream<Path> files = Files.list(cache_dir)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void emptyFile() throws IOException {
+        Path path = Files.createFile(dir.resolve("empty.txt"));
+        ResultCache<String, Integer> cache =
+            new ResultCache<>(dir.resolve("cache"), Integer::sum);
+        assertEquals(Map.of(), run(cache, path, 8));
+        assertEquals(Map.of(), run(cache, path, 8));
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    void pruneStaleEntries() throws IOException {
+        Path path = dir.resolve("text.txt");
+        Path cache_dir = dir.resolve("cache");
+        Files.write(path, List.of("a b c", "b c", "c"));
+        ResultCache<String, Integer> cache =
+            new ResultCache<>(cache_dir, Integer::sum);
+        assertEquals(Map.of("a", 1, "b", 2, "c", 3), run(cache, path, 4));
+        long before = entries(cache_dir);
+
+        /* The file grows, so its splits and their entries change */
+        Files.write(path, List.of("a b c", "b c", "c", "d d d d d d d d"));
+        cache = new ResultCache<>(cache_dir, Integer::sum);
+        assertEquals(Map.of("a", 1, "b", 2, "c", 3, "d", 8),
+            run(cache, path, 6));
+        long after = SplittableFileJob.splits(path, 6).size();
+        assertEquals(before + after, entries(cache_dir));
+        assertEquals(before, cache.prune());
+        assertEquals(after, entries(cache_dir));
+    }
+
+    @Test
+    void entriesApartByJobClassAndConfiguration() throws IOException {
+        Path path = dir.resolve("text.txt");
+        Files.write(path, List.of("a bb ccc", "bb ccc", "ccc"));
+        Map<String, Integer> all = Map.of("a", 1, "bb", 2, "ccc", 3);
+        Map<String, Integer> two = Map.of("bb", 2, "ccc", 3);
+        Map<String, Integer> three = Map.of("ccc", 3);
+        long jobs = 3 * SplittableFileJob.splits(path, 8).size();
+        for (int i = 0; i < 2; i++) {
+            ResultCache<String, Integer> cache =
+                new ResultCache<>(dir.resolve("cache"), SUM);
+            assertEquals(all, run(cache, path, 8));
+            assertEquals(two, run(cache, path, 8,
+                r -> new MinLengthJob(path, r.getKey(), r.getValue(), 2)));
+            assertEquals(three, run(cache, path, 8,
+                r -> new MinLengthJob(path, r.getKey(), r.getValue(), 3)));
+            assertEquals(i == 0 ? jobs : 0, cache.getMisses());
+            assertEquals(i == 0 ? 0 : jobs, cache.getHits());
+            assertEquals(jobs, entries(dir.resolve("cache")));
+        }
+    }
+
+    @Test
+    void missReadsSplitOnce() throws IOException {
+        Path path = dir.resolve("text.txt");
+        Files.write(path, List.of("a b c\r", "b c", "", "c d e f", "g"));
+        Map<String, Integer> expected =
+            Map.of("a", 1, "b", 2, "c", 3, "d", 1, "e", 1, "f", 1, "g", 1);
+        int splits = SplittableFileJob.splits(path, 5).size();
+        AtomicInteger lines = new AtomicInteger();
+        AtomicInteger mapped = new AtomicInteger();
+
+        ResultCache<String, Integer> cache =
+            new ResultCache<>(dir.resolve("cache"), SUM);
+        assertEquals(expected, run(cache, path, 5,
+            r -> new ReadCountingJob(path, r, lines, mapped)));
+        assertEquals(splits, cache.getMisses());
+        assertEquals(List.of(splits, 0), List.of(lines.get(), mapped.get()));
+
+        /* Touched but unchanged: the hash of the mapped split matches the
+           one computed while its lines were read */
+        Files.setLastModifiedTime(path, FileTime.fromMillis(
+            Files.getLastModifiedTime(path).toMillis() - 60_000));
+        lines.set(0);
+        cache = new ResultCache<>(dir.resolve("cache"), SUM);
+        assertEquals(expected, run(cache, path, 5,
+            r -> new ReadCountingJob(path, r, lines, mapped)));
+        assertEquals(splits, cache.getHits());
+        assertEquals(List.of(0, splits), List.of(lines.get(), mapped.get()));
+    }
+
+    @Test
+    void cachedJobShipped() throws Exception {
+        Path path = dir.resolve("text.txt");
+        Files.write(path, List.of("a b c", "b c", "c"));
+        Map<String, Integer> expected = Map.of("a", 1, "b", 2, "c", 3);
+        ResultCache<String, Integer> cache =
+            new ResultCache<>(dir.resolve("cache"), SUM);
+        AJob<String, Integer> job = cache.wrap(
+            new WordCountJob(path, 0, Files.size(path)));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(job);
+        }
+        @SuppressWarnings("unchecked")
+        AJob<String, Integer> shipped = (AJob<String, Integer>)
+            new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))
+                .readObject();
+
+        /* The worker writes the entry, which the next run reads */
+        assertEquals(expected, shipped.execute().collect(Collectors.toMap(
+            Pair::getKey, Pair::getValue)));
+        assertEquals(0, cache.getMisses());
+        assertEquals(expected, job.execute().collect(Collectors.toMap(
+            Pair::getKey, Pair::getValue)));
+        assertEquals(1, cache.getHits());
+        assertEquals(0, cache.prune());
+    }
+}
@@ -0,0 +1,141 @@
+/*
+* ShardedWriterTest
+*
+* @description: Tests of the sharded output: every item written once, no
+*               shard left blocked when one of them fails, and no queued
+*               chunk written after a failure.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+class ShardedWriterTest {
+
+    private static final int ITEMS = 100_000;
+    private static final int SHARDS = 4;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void everyItemOnce() throws IOException {
+        Path out = dir.resolve("out.txt");
+        new ShardedWriter<Integer>(out, SHARDS,
+            (x, w) -> w.putLong(x).newLine())
+            .write(IntStream.range(0, ITEMS).boxed());
+
+        List<Integer> written = new ArrayList<>();
+        for (int i = 0; i < SHARDS; i++) {
+            for (String line : Files.readAllLines(
+                    ShardedWriter.shard(out, i, SHARDS))) {
+                written.add(Integer.parseInt(line));
+            }
+        }
+        Collections.sort(written);
+        assertEquals(IntStream.range(0, ITEMS).boxed()
+            .collect(Collectors.toList()), written);
+    }
+
+    /**
+     * Writes the items, expecting a failure, and checks that no thread is
+     * left behind by the writer.
+     */
+    private static void assertFailsAndStops(ShardedWriter<Integer> writer,
+            Stream<Integer> items) throws InterruptedException {
+        Set<Thread> before = Thread.getAllStackTraces().keySet();
+        assertThrows(RuntimeException.class, () -> writer.write(items));
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (!before.contains(t)) {
+                t.join(10_000);
+                assertFalse(t.isAlive(), "Shard left blocked");
+            }
+        }
+    }
+
+    @Test
+    void failingShardStopsAll() throws InterruptedException {
+        /* The first shard fails at once, while the others are waiting */
+        ShardedWriter<Integer> writer = new ShardedWriter<>(
+            dir.resolve("out.txt"), SHARDS, (x, w) -> {
+                if (x == 0) {
+                    throw new IllegalStateException("Failing shard");
+                }
+                w.putLong(x).newLine();
+            });
+        assertFailsAndStops(writer, IntStream.range(0, ITEMS).boxed());
+    }
+
+    @Test
+    void failingStreamStopsAll() throws InterruptedException {
+        ShardedWriter<Integer> writer = new ShardedWriter<>(
+            dir.resolve("out.txt"), SHARDS, (x, w) -> w.putLong(x).newLine());
+        assertFailsAndStops(writer, IntStream.range(0, ITEMS).boxed()
+            .map(x -> {
+                if (x == ITEMS / 2) {
+                    throw new IllegalStateException("Failing stream");
+                }
+                return x;
+            }));
+    }
+
+    @Test
+    void queuedChunksDroppedOnFailure() throws InterruptedException {
+        /* Chunks of 4096 items go round-robin: the first shard fails on
+           its first chunk once the others have several chunks queued, and
+           they wait for the failure before writing their first chunk */
+        int chunk = 4096;
+        CountDownLatch queued = new CountDownLatch(1);
+        CountDownLatch failed = new CountDownLatch(1);
+        AtomicInteger written = new AtomicInteger();
+        ShardedWriter<Integer> writer = new ShardedWriter<>(
+            dir.resolve("out.txt"), SHARDS, (x, w) -> {
+                try {
+                    if (x == 0) {
+                        queued.await(10, TimeUnit.SECONDS);
+                        failed.countDown();
+                        throw new IllegalStateException("Failing shard");
+                    }
+                    if (x < SHARDS * chunk && x % chunk == 0) {
+                        failed.await(10, TimeUnit.SECONDS);
+                        Thread.sleep(200);
+                    }
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                written.incrementAndGet();
+                w.putLong(x).newLine();
+            });
+        assertFailsAndStops(writer, IntStream.range(0, ITEMS).boxed()
+            .peek(x -> {
+                if (x == 3 * SHARDS * chunk) {
+                    queued.countDown();
+                }
+            }));
+        /* At most the chunk each shard was writing */
+        assertTrue(written.get() <= (SHARDS - 1) * chunk,
+            written.get() + " items written");
+    }
+}
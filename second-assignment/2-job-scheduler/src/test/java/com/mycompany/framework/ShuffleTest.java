@@ -0,0 +1,139 @@
+/*
+* ShuffleTest
+*
+* @description: Tests of 'shuffle' against 'collect(compute(jobs))' on the
+*               same jobs: several partitions, some of them empty, empty
+*               jobs, with and without a reducer.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+
+class ShuffleTest {
+
+    /* A partition of 8 that none of the keys hashes into */
+    private static final int EMPTY = 3;
+
+    /**
+     * Strategy emitting jobs with fixed outputs.
+     */
+    private static class PairsStrategy
+            extends JobSchedulerStrategy<Integer, Integer> {
+        private final List<List<Pair<Integer, Integer>>> outputs;
+        private final boolean reduced;
+
+        PairsStrategy(List<List<Pair<Integer, Integer>>> outputs,
+                boolean reduced) {
+            this.outputs = outputs;
+            this.reduced = reduced;
+        }
+
+        @Override
+        protected Stream<AJob<Integer, Integer>> emit() {
+            return outputs.stream().map(x -> new AJob<Integer, Integer>() {
+                @Override
+                public Stream<Pair<Integer, Integer>> execute() {
+                    return x.stream();
+                }
+            });
+        }
+
+        @Override
+        protected Reducer<Integer> reducer() {
+            return reduced ? new Reducer<>(0, Integer::sum) : null;
+        }
+
+        @Override
+        protected void output(Stream<Pair<Integer, List<Integer>>> groups) {
+        }
+    }
+
+    /**
+     * The outputs of the jobs: the keys below 500 not hashing into
+     * 'EMPTY' of 8 partitions, more or less often, and two empty jobs.
+     */
+    private static List<List<Pair<Integer, Integer>>> outputs() {
+        List<Integer> keys = IntStream.range(0, 500)
+            .filter(x -> JobSchedulerContext.partitionOf(x, 8) != EMPTY)
+            .boxed()
+            .collect(Collectors.toList());
+        List<List<Pair<Integer, Integer>>> outputs = new ArrayList<>();
+        for (int job = 0; job < 12; job++) {
+            List<Pair<Integer, Integer>> pairs = new ArrayList<>();
+            if (job % 5 != 4) {
+                for (int i = 0; i < keys.size(); i += 1 + job % 3) {
+                    pairs.add(new Pair<>(keys.get(i), job * 1000 + i));
+                }
+            }
+            outputs.add(pairs);
+        }
+        return outputs;
+    }
+
+    /**
+     * Collects groups into a map, failing if a key is grouped twice.
+     */
+    private static Map<Integer, List<Integer>> toMap(
+            Stream<Pair<Integer, List<Integer>>> groups) {
+        Map<Integer, List<Integer>> map = new HashMap<>();
+        try (groups) {
+            groups.forEach(x -> assertNull(
+                map.put(x.getKey(), x.getValue()), "key " + x.getKey()));
+        }
+        return map;
+    }
+
+    private static void assertSameGroups(boolean reduced) {
+        PairsStrategy strat = new PairsStrategy(outputs(), reduced);
+        try (JobSchedulerContext<Integer, Integer> context =
+                new JobSchedulerContext<>(strat)) {
+            Map<Integer, List<Integer>> expected =
+                toMap(context.collect(context.compute(strat.emit())));
+            assertTrue(expected.keySet().stream().noneMatch(
+                x -> JobSchedulerContext.partitionOf(x, 8) == EMPTY));
+
+            context.setParallelism(4);
+            for (int partitions : new int[] {1, 3, 8, 1000}) {
+                context.setPartitions(partitions);
+                assertEquals(expected, toMap(context.shuffle(strat.emit())),
+                    partitions + " partitions");
+            }
+        }
+    }
+
+    @Test
+    void sameGroupsAsCollect() {
+        assertSameGroups(false);
+    }
+
+    @Test
+    void sameReducedGroupsAsCollect() {
+        assertSameGroups(true);
+    }
+
+    @Test
+    void noJobs() {
+        PairsStrategy strat = new PairsStrategy(List.of(), false);
+        try (JobSchedulerContext<Integer, Integer> context =
+                new JobSchedulerContext<>(strat)) {
+            context.setParallelism(4);
+            context.setPartitions(8);
+            assertEquals(Map.of(), toMap(context.shuffle(strat.emit())));
+        }
+    }
+}
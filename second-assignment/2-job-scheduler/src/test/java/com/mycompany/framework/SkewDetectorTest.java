@@ -0,0 +1,130 @@
+/*
+* SkewDetectorTest
+*
+* @description: Tests of the splitting of the hot keys: detection on the
+*               output of the jobs before it is combined, and same groups
+*               as 'collect' with a deliberately hot key.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+class SkewDetectorTest {
+
+    private static final int PARTITIONS = 4;
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Writes a corpus where "hot" is half of the words.
+     */
+    private void writeSkewedCorpus(int files) throws IOException {
+        for (int f = 0; f < files; f++) {
+            List<String> lines = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                StringBuilder line = new StringBuilder();
+                for (int j = 0; j < 6; j++) {
+                    line.append("hot w").append((f * 131 + i * 7 + j) % 1500)
+                        .append(' ');
+                }
+                lines.add(line.toString());
+            }
+            Files.write(dir.resolve("doc-" + f + ".txt"), lines);
+        }
+    }
+
+    /**
+     * The output of a job: 'hot' every other pair, distinct keys between.
+     */
+    private static List<Pair<String, Integer>> output(int job) {
+        List<Pair<String, Integer>> pairs = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            pairs.add(new Pair<>(i % 2 == 0 ? "hot" : "k" + job + "-" + i, 1));
+        }
+        return pairs;
+    }
+
+    @Test
+    void hotKeyDetectedBeforeCombining() {
+        SkewDetector<String> skew = new SkewDetector<>(PARTITIONS);
+        SkewDetector<String> combined = new SkewDetector<>(PARTITIONS);
+        for (int job = 0; job < 8; job++) {
+            SkewDetector<String>.Sampler sampler = skew.sampler();
+            output(job).forEach(sampler);
+            sampler.done();
+
+            /* Combined, the hot key is a single pair of each job */
+            SkewDetector<String>.Sampler late = combined.sampler();
+            output(job).stream()
+                .filter(x -> !x.getKey().equals("hot"))
+                .forEach(late);
+            late.accept(new Pair<>("hot", 500));
+            late.done();
+        }
+        assertTrue(skew.detect());
+        assertTrue(skew.isHot("hot"));
+        assertFalse(skew.isHot("k0-1"));
+        assertFalse(combined.detect());
+
+        /* The hot key goes round-robin to all the partitions */
+        Set<Integer> partitions = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            partitions.add(skew.partitionOf("hot", i));
+        }
+        assertEquals(PARTITIONS, partitions.size());
+        assertEquals(JobSchedulerContext.partitionOf("k0-1", PARTITIONS),
+            skew.partitionOf("k0-1", 5));
+    }
+
+    /**
+     * Runs a word count sequentially, then on a pool splitting the hot
+     * keys, plain and instrumented.
+     */
+    private void assertSameCounts(boolean reduced) throws IOException {
+        writeSkewedCorpus(6);
+        WordCountStrategy strat = new WordCountStrategy(dir, 2048, reduced);
+        try (JobSchedulerContext<String, Integer> context =
+                new JobSchedulerContext<>(strat)) {
+            context.run();
+            Map<String, Integer> expected = strat.counts();
+            assertEquals(6 * 200 * 6, expected.get("hot"));
+
+            context.setParallelism(PARTITIONS);
+            context.setSkewSplitting(true);
+            context.run();
+            assertEquals(expected, strat.counts());
+
+            context.setInstrumented(true);
+            context.run();
+            assertEquals(expected, strat.counts());
+        }
+    }
+
+    @Test
+    void sameGroupsAsCollectWithHotKey() throws IOException {
+        assertSameCounts(false);
+    }
+
+    @Test
+    void sameCombinedGroupsAsCollectWithHotKey() throws IOException {
+        assertSameCounts(true);
+    }
+}
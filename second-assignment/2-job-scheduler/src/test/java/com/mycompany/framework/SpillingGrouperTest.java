@@ -0,0 +1,161 @@
+/*
+* SpillingGrouperTest
+*
+* @description: Tests of the spilling mode: same groups as 'collect' when
+*               the records spill to disk many times, and no run left
+*               behind when the groups are not all read or grouping fails.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collector;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+class SpillingGrouperTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Word count whose output reads only the first few groups.
+     */
+    private static class FirstGroupsStrategy extends WordCountStrategy {
+        FirstGroupsStrategy(Path dir) {
+            super(dir, 4096, true);
+        }
+
+        @Override
+        protected void output(Stream<Pair<String, List<Integer>>> groups) {
+            super.output(groups.limit(5));
+        }
+    }
+
+    /**
+     * The spilled runs in the temporary directory.
+     */
+    private static Set<Path> runs() throws IOException {
+        Set<Path> runs = new HashSet<>();
+        try (Stream<Path> files = Files.list(
+                Path.of(System.getProperty("java.io.tmpdir")))) {
+            files.filter(x -> {
+                String name = x.getFileName().toString();
+                return name.startsWith("shuffle-") && name.endsWith(".run");
+            }).forEach(runs::add);
+        }
+        return runs;
+    }
+
+    private static Collector<Integer, List<Integer>, List<Integer>> values() {
+        return Collector.of(ArrayList::new, List::add, (a, b) -> {
+            a.addAll(b);
+            return a;
+        });
+    }
+
+    /**
+     * Runs a word count in memory, then spilling every 'threshold'
+     * records, sequentially and on a pool.
+     */
+    private void assertSameCounts(boolean reduced, long threshold)
+            throws IOException {
+        WordCountStrategy.writeCorpus(dir, 4);
+        WordCountStrategy strat = new WordCountStrategy(dir, 4096, reduced);
+        try (JobSchedulerContext<String, Integer> context =
+                new JobSchedulerContext<>(strat)) {
+            context.run();
+            Map<String, Integer> expected = strat.counts();
+
+            context.setSpillThreshold(threshold);
+            context.run();
+            assertEquals(expected, strat.counts());
+
+            context.setParallelism(4);
+            context.run();
+            assertEquals(expected, strat.counts());
+        }
+    }
+
+    @Test
+    void sameGroupsAsCollect() throws IOException {
+        assertSameCounts(false, 100);
+    }
+
+    @Test
+    void sameReducedGroupsAsCollect() throws IOException {
+        assertSameCounts(true, 100);
+    }
+
+    @Test
+    void spillManyRuns() throws IOException {
+        /* A few records per run, so that many runs are merged */
+        assertSameCounts(true, 32);
+    }
+
+    @Test
+    void runsDeletedWhenClosed() throws IOException {
+        Set<Path> before = runs();
+        SpillingGrouper<Integer, Integer, List<Integer>> grouper =
+            new SpillingGrouper<>(values(), 10, true);
+        try (Stream<Pair<Integer, List<Integer>>> groups = grouper.group(
+                IntStream.range(0, 1000).mapToObj(x -> new Pair<>(x, x)))) {
+            assertEquals(3, groups.limit(3).count());
+            assertTrue(runs().size() > before.size());
+        }
+        assertEquals(before, runs());
+
+        /* Reading all the groups deletes the runs too */
+        grouper = new SpillingGrouper<>(values(), 10, true);
+        assertEquals(1000, grouper.group(
+            IntStream.range(0, 1000).mapToObj(x -> new Pair<>(x, x))).count());
+        assertEquals(before, runs());
+    }
+
+    @Test
+    void runsDeletedWhenOutputStopsEarly() throws IOException {
+        Set<Path> before = runs();
+        WordCountStrategy.writeCorpus(dir, 4);
+        WordCountStrategy strat = new FirstGroupsStrategy(dir);
+        try (JobSchedulerContext<String, Integer> context =
+                new JobSchedulerContext<>(strat)) {
+            context.setSpillThreshold(32);
+            context.run();
+            assertEquals(5, strat.counts().size());
+            assertEquals(before, runs());
+
+            context.setParallelism(4);
+            context.run();
+            assertEquals(5, strat.counts().size());
+            assertEquals(before, runs());
+        }
+    }
+
+    @Test
+    void runsDeletedWhenGroupingFails() throws IOException {
+        Set<Path> before = runs();
+        /* The keys are not serializable, so the second spill fails */
+        SpillingGrouper<Object, Integer, List<Integer>> grouper =
+            new SpillingGrouper<>(values(), 2, true);
+        assertThrows(RuntimeException.class, () -> grouper.group(Stream.of(
+            new Pair<>(1, 1), new Pair<>(2, 2),
+            new Pair<>(new Object(), 3), new Pair<>(new Object(), 4))));
+        assertEquals(before, runs());
+    }
+}
@@ -0,0 +1,102 @@
+/*
+* SplittableFileJobTest
+*
+* @description: Tests of the line alignment of the splits of a file, in line
+*               and in mapped mode.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+class SplittableFileJobTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Job emitting the lines of its split, read either way.
+     */
+    private static class LineJob extends SplittableFileJob<String, String> {
+        private static final long serialVersionUID = 1L;
+
+        LineJob(Path path, long start, long end) {
+            super(path, start, end);
+        }
+
+        @Override
+        public Stream<Pair<String, String>> execute() {
+            return lines().map(x -> new Pair<>(x, x));
+        }
+
+        String mappedText() {
+            ByteBuffer bytes = mapped();
+            byte[] text = new byte[bytes.remaining()];
+            bytes.get(text);
+            return new String(text, StandardCharsets.UTF_8);
+        }
+    }
+
+    private List<LineJob> jobs(Path path, long split_size) {
+        return SplittableFileJob.splits(path, split_size)
+            .stream()
+            .map(r -> new LineJob(path, r.getKey(), r.getValue()))
+            .collect(Collectors.toList());
+    }
+
+    private static List<String> lines(List<LineJob> jobs) {
+        List<String> lines = new ArrayList<>();
+        for (LineJob job : jobs) {
+            try (Stream<Pair<String, String>> pairs = job.execute()) {
+                pairs.forEach(x -> lines.add(x.getKey()));
+            }
+        }
+        return lines;
+    }
+
+    private static String mapped(List<LineJob> jobs) {
+        StringBuilder sb = new StringBuilder();
+        for (LineJob job : jobs) {
+            sb.append(job.mappedText());
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void emptyFile() throws IOException {
+        Path path = Files.createFile(dir.resolve("empty.txt"));
+        List<LineJob> jobs = jobs(path, 4);
+        assertEquals(List.of(), lines(jobs));
+        assertEquals("", mapped(jobs));
+    }
+
+    @Test
+    void noFinalNewline() throws IOException {
+        String text = "alpha beta\ngamma\n\ndelta epsilon zeta";
+        Path path = dir.resolve("text.txt");
+        Files.writeString(path, text);
+        List<String> expected =
+            List.of("alpha beta", "gamma", "", "delta epsilon zeta");
+        for (long split_size = 1; split_size <= text.length() + 1;
+                split_size++) {
+            List<LineJob> jobs = jobs(path, split_size);
+            assertEquals(expected, lines(jobs), "split size " + split_size);
+            assertEquals(text, mapped(jobs), "split size " + split_size);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+* StreamingJobSchedulerTest
+*
+* @description: Tests of the streaming mode: the output follows the files
+*               of the directory, and refreshes never overlap.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+class StreamingJobSchedulerTest {
+
+    private static final long SPLIT_SIZE = 16;
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Word count remembering how many outputs ran at the same time.
+     */
+    private static class OverlapStrategy extends WordCountStrategy {
+        final AtomicInteger running = new AtomicInteger();
+        volatile int overlapping = 0;
+
+        OverlapStrategy(Path dir) {
+            super(dir, SPLIT_SIZE, true);
+        }
+
+        @Override
+        protected void output(Stream<Pair<String, List<Integer>>> groups) {
+            int n = running.incrementAndGet();
+            overlapping = Math.max(overlapping, n);
+            try {
+                Thread.sleep(1);
+                super.output(groups);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+    }
+
+    private static Stream<AJob<String, Integer>> jobs(Path file) {
+        return SplittableFileJob.splits(file, SPLIT_SIZE)
+            .stream()
+            .map(r -> new WordCountJob(file, r.getKey(), r.getValue()));
+    }
+
+    /**
+     * Waits until the output has the expected counts, as the events of
+     * the directory arrive with some delay.
+     */
+    private static void awaitCounts(StreamingJobScheduler<String, Integer> s,
+            WordCountStrategy strat, Map<String, Integer> expected)
+            throws InterruptedException, ExecutionException {
+        for (int i = 0; i < 300; i++) {
+            s.refresh().get();
+            if (strat.counts().equals(expected)) {
+                return;
+            }
+            Thread.sleep(100);
+        }
+        assertEquals(expected, strat.counts());
+    }
+
+    @Test
+    void outputFollowsFiles() throws Exception {
+        Files.writeString(dir.resolve("a.txt"), "a b c\nb c\nc\n");
+        WordCountStrategy strat = new WordCountStrategy(dir, SPLIT_SIZE, true);
+        JobSchedulerContext<String, Integer> context =
+            new JobSchedulerContext<>(strat);
+        try (StreamingJobScheduler<String, Integer> s =
+                new StreamingJobScheduler<>(context, dir,
+                    StreamingJobSchedulerTest::jobs)) {
+            s.start();
+            s.refresh().get();
+            assertEquals(Map.of("a", 1, "b", 2, "c", 3), strat.counts());
+
+            Files.writeString(dir.resolve("b.txt"), "a d\n");
+            awaitCounts(s, strat, Map.of("a", 2, "b", 2, "c", 3, "d", 1));
+
+            Files.writeString(dir.resolve("a.txt"), "b\n");
+            awaitCounts(s, strat, Map.of("a", 1, "b", 1, "d", 1));
+
+            Files.delete(dir.resolve("b.txt"));
+            awaitCounts(s, strat, Map.of("b", 1));
+        }
+    }
+
+    @Test
+    void refreshesNeverOverlap() throws Exception {
+        for (int i = 0; i < 8; i++) {
+            Files.writeString(dir.resolve(i + ".txt"), "x y\nz " + i + "\n");
+        }
+        OverlapStrategy strat = new OverlapStrategy(dir);
+        JobSchedulerContext<String, Integer> context =
+            new JobSchedulerContext<>(strat);
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try (StreamingJobScheduler<String, Integer> s =
+                new StreamingJobScheduler<>(context, dir,
+                    StreamingJobSchedulerTest::jobs)) {
+            s.start();
+            List<Future<?>> refreshes = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                refreshes.add(callers.submit(() -> {
+                    for (int j = 0; j < 50; j++) {
+                        s.refresh().get();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : refreshes) {
+                f.get();
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        assertEquals(1, strat.overlapping);
+        assertEquals(8, (int) strat.counts().get("x"));
+        assertEquals(1, (int) strat.counts().get("7"));
+    }
+}
@@ -0,0 +1,140 @@
+/*
+* VirtualThreadExecutorTest
+*
+* @description: Tests of the virtual thread executor: the limit on the
+*               running tasks, a task interrupted while waiting for a
+*               permit, and same groups as 'collect'. On Java 21+ only;
+*               older versions must be rejected.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+class VirtualThreadExecutorTest {
+
+    private static final int LIMIT = 3;
+
+    @TempDir
+    Path dir;
+
+    private static void assumeVirtualThreads() {
+        assumeTrue(Runtime.version().feature() >= 21);
+    }
+
+    @Test
+    void rejectedBeforeJava21() {
+        assumeTrue(Runtime.version().feature() < 21);
+        try (JobSchedulerContext<String, Integer> context =
+                new JobSchedulerContext<>(
+                    new WordCountStrategy(dir, 1024, true))) {
+            RuntimeException e = assertThrows(RuntimeException.class,
+                () -> context.setVirtualThreads(LIMIT));
+            assertTrue(e.getMessage().contains("Java 21+"), e.getMessage());
+        }
+    }
+
+    @Test
+    void runningTasksLimited() throws Exception {
+        assumeVirtualThreads();
+        VirtualThreadExecutor executor = new VirtualThreadExecutor(LIMIT);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger max = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            futures.add(executor.submit(() -> {
+                max.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        assertTrue(max.get() <= LIMIT, "max " + max.get());
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertThrows(RuntimeException.class,
+            () -> executor.execute(() -> { }));
+    }
+
+    @Test
+    void interruptedWhileWaitingStillRuns() throws Exception {
+        assumeVirtualThreads();
+        List<Thread> threads = new ArrayList<>();
+        ThreadFactory virtual = VirtualThreadExecutor.virtualThreadFactory();
+        ThreadFactory factory = x -> {
+            Thread thread = virtual.newThread(x);
+            synchronized (threads) {
+                threads.add(thread);
+            }
+            return thread;
+        };
+        VirtualThreadExecutor executor = new VirtualThreadExecutor(1, factory);
+
+        /* The first task holds the only permit until released */
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> holder = executor.submit(() -> {
+            release.await();
+            return null;
+        });
+        Future<Boolean> waiting = executor.submit(
+            () -> Thread.currentThread().isInterrupted());
+        Thread thread;
+        synchronized (threads) {
+            assertEquals(2, threads.size());
+            thread = threads.get(1);
+        }
+        while (thread.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        thread.interrupt();
+        Thread.sleep(20);
+        assertFalse(waiting.isDone());
+
+        release.countDown();
+        holder.get(10, TimeUnit.SECONDS);
+        assertTrue(waiting.get(10, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void sameGroupsAsCollect() throws IOException {
+        assumeVirtualThreads();
+        WordCountStrategy.writeCorpus(dir, 6);
+        WordCountStrategy strat = new WordCountStrategy(dir, 4096, true);
+        try (JobSchedulerContext<String, Integer> context =
+                new JobSchedulerContext<>(strat)) {
+            context.run();
+            Map<String, Integer> expected = strat.counts();
+            context.setVirtualThreads(LIMIT);
+            context.run();
+            assertEquals(expected, strat.counts());
+        }
+    }
+}
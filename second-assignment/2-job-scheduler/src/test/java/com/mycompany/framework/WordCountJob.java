@@ -0,0 +1,32 @@
+/*
+* WordCountJob
+*
+* @description: Test job emitting (word, 1) for each word of a split of a
+*               file, the words being separated by spaces.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+
+class WordCountJob extends SplittableFileJob<String, Integer> {
+
+    private static final long serialVersionUID = 1L;
+
+    WordCountJob(Path path, long start, long end) {
+        super(path, start, end);
+    }
+
+    @Override
+    public Stream<Pair<String, Integer>> execute() {
+        return lines()
+            .flatMap(x -> Arrays.stream(x.split(" ")))
+            .filter(x -> !x.isEmpty())
+            .map(x -> new Pair<>(x, 1));
+    }
+}
@@ -0,0 +1,144 @@
+/*
+* WordCountStrategy
+*
+* @description: Test strategy counting the words of the files of a
+*               directory, keeping the groups passed to 'output'.
+*
+* @author: m.pinna10@studenti.unipi.it
+*/
+
+package com.mycompany.framework;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BinaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+class WordCountStrategy extends JobSchedulerStrategy<String, Integer> {
+
+    private final Path dir;
+    private final long split_size;
+    private final boolean reduced;
+
+    /* The groups passed to the last 'output', and their keys in order */
+    private Map<String, List<Integer>> groups;
+    private List<String> keys;
+
+    /**
+     * Constructor.
+     *
+     * @param dir The directory of the files
+     * @param split_size The size of the splits of a file
+     * @param reduced True to sum the counts with a reducer, false to keep
+     *                all of them
+     */
+    WordCountStrategy(Path dir, long split_size, boolean reduced) {
+        this.dir = dir;
+        this.split_size = split_size;
+        this.reduced = reduced;
+    }
+
+    /**
+     * Writes a small corpus: a few thousand distinct words, some of them
+     * much more frequent than the others.
+     *
+     * @param dir The directory of the files
+     * @param files The number of files
+     */
+    static void writeCorpus(Path dir, int files) throws IOException {
+        for (int f = 0; f < files; f++) {
+            List<String> lines = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                StringBuilder line = new StringBuilder("the");
+                for (int j = 1; j < 12; j++) {
+                    line.append(" w").append((f * 7919 + i * j * 31) % 2000);
+                }
+                lines.add(line.toString());
+            }
+            Files.write(dir.resolve("doc-" + f + ".txt"), lines);
+        }
+    }
+
+    @Override
+    protected Stream<AJob<String, Integer>> emit() {
+        List<Path> files;
+        try (Stream<Path> paths = Files.list(dir)) {
+            files = paths.sorted().collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return files
+            .stream()
+            .flatMap(path -> SplittableFileJob.splits(path, split_size)
+                .stream()
+                .map(r -> new WordCountJob(path, r.getKey(), r.getValue())));
+    }
+
+    @Override
+    protected Reducer<Integer> reducer() {
+        if (!reduced) {
+            return null;
+        }
+        return new Reducer<>(0,
+            (BinaryOperator<Integer> & Serializable) Integer::sum);
+    }
+
+    /**
+     * Ranks the words by count, the most frequent first, then by word.
+     */
+    @Override
+    protected Comparator<Pair<String, List<Integer>>> ranking() {
+        return Comparator
+            .comparingInt((Pair<String, List<Integer>> x) -> -count(x))
+            .thenComparing(Pair::getKey);
+    }
+
+    static int count(Pair<String, List<Integer>> group) {
+        return group.getValue().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    @Override
+    protected void output(Stream<Pair<String, List<Integer>>> groups) {
+        Map<String, List<Integer>> map = new HashMap<>();
+        List<String> order = new ArrayList<>();
+        groups.forEach(x -> {
+            if (map.put(x.getKey(), x.getValue()) != null) {
+                throw new AssertionError("Duplicate group " + x.getKey());
+            }
+            order.add(x.getKey());
+        });
+        this.groups = map;
+        this.keys = order;
+    }
+
+    /**
+     * Gets the words of the last run, in the order of 'output'.
+     *
+     * @return The words
+     */
+    List<String> keys() {
+        return keys;
+    }
+
+    /**
+     * Gets the total count of each word of the last run.
+     *
+     * @return The counts, by word
+     */
+    Map<String, Integer> counts() {
+        Map<String, Integer> counts = new HashMap<>();
+        groups.forEach((k, v) -> counts.put(k,
+            v.stream().mapToInt(Integer::intValue).sum()));
+        return counts;
+    }
+}